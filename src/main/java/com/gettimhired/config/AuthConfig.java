@@ -1,10 +1,16 @@
 package com.gettimhired.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class AuthConfig {
 
@@ -13,4 +19,20 @@ public class AuthConfig {
         return new BCryptPasswordEncoder();
     }
 
+    //user detail refreshes block on the user service, so they get their own bounded pool instead
+    //of the common pool. A full queue rejects the refresh and the cached entry is served as is
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService userLookupExecutor(
+            @Value("${resumejobservice.userservice.refresh.threads:4}") int threads,
+            @Value("${resumejobservice.userservice.refresh.queue-size:1000}") int queueSize
+    ) {
+        var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            var thread = new Thread(runnable, "user-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
 }
@@ -13,12 +13,15 @@ public class AuthorizationHeaderFilter extends HttpFilter {
     protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws IOException, ServletException {
 
+        //the filter is both a servlet filter and in the security chain, the inner pass
+        //must leave the outer one's header in place
+        var previousHeader = RequestContextHolder.getHeader();
         try {
             String headerValue = request.getHeader("Authorization");
             RequestContextHolder.setHeader(headerValue);
             chain.doFilter(request, response);
         } finally {
-            RequestContextHolder.clear();
+            RequestContextHolder.restore(previousHeader);
         }
     }
 }
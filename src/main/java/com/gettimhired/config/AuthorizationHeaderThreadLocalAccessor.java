@@ -0,0 +1,30 @@
+package com.gettimhired.config;
+
+import io.micrometer.context.ThreadLocalAccessor;
+
+//registered through META-INF/services so context snapshots carry the header onto the thread that
+//runs the work, spring graphql uses them for controller methods it hands to the task executor
+public class AuthorizationHeaderThreadLocalAccessor implements ThreadLocalAccessor<String> {
+
+    public static final String KEY = "gettimhired.authorization";
+
+    @Override
+    public Object key() {
+        return KEY;
+    }
+
+    @Override
+    public String getValue() {
+        return RequestContextHolder.getHeader();
+    }
+
+    @Override
+    public void setValue(String value) {
+        RequestContextHolder.setHeader(value);
+    }
+
+    @Override
+    public void setValue() {
+        RequestContextHolder.clear();
+    }
+}
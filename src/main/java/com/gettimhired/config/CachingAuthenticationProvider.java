@@ -0,0 +1,46 @@
+package com.gettimhired.config;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final VerifiedCredentialCache verifiedCredentialCache;
+
+    public CachingAuthenticationProvider(
+            CustomUserDetailsService customUserDetailsService,
+            PasswordEncoder passwordEncoder,
+            VerifiedCredentialCache verifiedCredentialCache
+    ) {
+        super(passwordEncoder);
+        setUserDetailsService(customUserDetailsService);
+        this.verifiedCredentialCache = verifiedCredentialCache;
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails, UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        if (authentication.getCredentials() == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+
+        //the stored hash is part of the digest so a password change misses the cache
+        var digest = verifiedCredentialCache.digest(
+                userDetails.getUsername(),
+                authentication.getCredentials().toString(),
+                userDetails.getPassword()
+        );
+        if (verifiedCredentialCache.isVerified(userDetails.getUsername(), digest)) {
+            return;
+        }
+
+        super.additionalAuthenticationChecks(userDetails, authentication);
+        verifiedCredentialCache.markVerified(userDetails.getUsername(), digest);
+    }
+}
@@ -0,0 +1,39 @@
+package com.gettimhired.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+
+@Component
+public class ChangeSetHealthIndicator implements HealthIndicator {
+
+    public static final Status MIGRATING = new Status("MIGRATING", "Required change sets are still running");
+
+    private final MongoSchemaManager mongoSchemaManager;
+
+    public ChangeSetHealthIndicator(MongoSchemaManager mongoSchemaManager) {
+        this.mongoSchemaManager = mongoSchemaManager;
+    }
+
+    @Override
+    public Health health() {
+        var details = new LinkedHashMap<String, Object>();
+        var status = Status.UP;
+        for (MongoSchemaManager.ChangeSetStatus changeSet : mongoSchemaManager.statuses()) {
+            details.put(changeSet.id(), changeSet.state() + (changeSet.required() ? "" : " (non-blocking)"));
+            //only required change sets gate traffic, the rest can finish while we serve
+            if (!changeSet.required()) {
+                continue;
+            }
+            if (changeSet.state() == MongoSchemaManager.ChangeSetState.FAILED) {
+                status = Status.DOWN;
+            } else if (changeSet.state() != MongoSchemaManager.ChangeSetState.COMPLETED && status != Status.DOWN) {
+                status = MIGRATING;
+            }
+        }
+        return Health.status(status).withDetails(details).build();
+    }
+}
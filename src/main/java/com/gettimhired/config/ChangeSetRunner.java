@@ -0,0 +1,121 @@
+package com.gettimhired.config;
+
+import com.gettimhired.model.mongo.ChangeSet;
+import com.gettimhired.repository.ChangeSetRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+@Component
+public class ChangeSetRunner {
+    Logger log = LoggerFactory.getLogger(ChangeSetRunner.class);
+    private final ChangeSetRepository changeSetRepository;
+    private final Duration lease;
+    private final Duration heartbeat;
+    private final Duration pollInterval;
+    private final String owner;
+    private final ScheduledExecutorService heartbeats;
+
+    public ChangeSetRunner(
+            ChangeSetRepository changeSetRepository,
+            @Value("${resumejobservice.changesets.lease:PT2M}") Duration lease,
+            @Value("${resumejobservice.changesets.heartbeat:PT30S}") Duration heartbeat,
+            @Value("${resumejobservice.changesets.poll-interval:PT5S}") Duration pollInterval
+    ) {
+        this.changeSetRepository = changeSetRepository;
+        this.lease = lease;
+        this.heartbeat = heartbeat;
+        this.pollInterval = pollInterval;
+        //unique per process, two replicas on one host still get different owners
+        this.owner = UUID.randomUUID().toString();
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "changeset-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean run(String id, String author, String description, Runnable change) throws InterruptedException {
+        return run(id, author, description, leaseLost -> change.run());
+    }
+
+    //runs the change set once across every node on the database, blocks until it's completed
+    //here or elsewhere and returns true when this node did the work. A long change gets told when
+    //the lease is gone so it can stop between batches, another node may already be running it
+    public boolean run(String id, String author, String description, Consumer<BooleanSupplier> change) throws InterruptedException {
+        while (true) {
+            var claimed = changeSetRepository.claim(id, author, description, owner, lease);
+            if (claimed.isPresent()) {
+                execute(id, author, description, change);
+                return true;
+            }
+            if (changeSetRepository.findById(id).map(ChangeSet::isCompleted).orElse(false)) {
+                log.debug("Change set already applied |id: {}", id);
+                return false;
+            }
+            //another node holds the lease, wait for it to finish or for the lease to run out
+            log.debug("Waiting on change set held by another node |id: {}", id);
+            Thread.sleep(pollInterval.toMillis());
+        }
+    }
+
+    private void execute(String id, String author, String description, Consumer<BooleanSupplier> change) {
+        log.info("Running change set |id: {} |author: {} |description: {} |owner: {}", id, author, description, owner);
+        var leaseLost = new AtomicBoolean();
+        var renewedAt = new AtomicLong(System.nanoTime());
+        var renewal = heartbeats.scheduleAtFixedRate(() -> {
+            try {
+                if (changeSetRepository.renew(id, owner, lease)) {
+                    renewedAt.set(System.nanoTime());
+                } else if (!leaseLost.getAndSet(true)) {
+                    log.warn("Lost the lease on change set |id: {} |owner: {}", id, owner);
+                }
+            } catch (RuntimeException e) {
+                //an exception would cancel the schedule, keep trying until the lease has run out
+                log.warn("Error renewing change set lease |id: {} |owner: {}", id, owner, e);
+                if (System.nanoTime() - renewedAt.get() >= lease.toNanos() && !leaseLost.getAndSet(true)) {
+                    log.warn("Change set lease ran out without a renewal |id: {} |owner: {}", id, owner);
+                }
+            }
+        }, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            change.accept(leaseLost::get);
+            renewal.cancel(false);
+            if (leaseLost.get()) {
+                throw new CancellationException("Lost the lease on change set " + id);
+            }
+            if (!changeSetRepository.complete(id, owner)) {
+                log.warn("Change set finished after its lease was taken over |id: {} |owner: {}", id, owner);
+            }
+        } catch (CancellationException e) {
+            renewal.cancel(false);
+            //the lease belongs to someone else now, leave the change set for them to complete
+            log.warn("Change set stopped after losing its lease |id: {} |owner: {}", id, owner);
+            throw e;
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            log.error("Error with change set |id: {} |author: {} |description: {}", id, author, description, e);
+            //give the lease back so the next start, here or elsewhere, can retry right away
+            changeSetRepository.release(id, owner, e.getMessage());
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+    }
+}
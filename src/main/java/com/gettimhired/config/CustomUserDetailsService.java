@@ -2,34 +2,177 @@ package com.gettimhired.config;
 
 import com.gettimhired.model.dto.CustomUserDetails;
 import com.gettimhired.service.UserService;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
     private final UserService userService;
+    private final VerifiedCredentialCache verifiedCredentialCache;
+    //async so the user service call never runs inside the map's compute, blocking io under that
+    //lock pins a virtual thread and holds up every other lookup on the same bin
+    private final AsyncLoadingCache<UserKey, CachedUser> users;
 
-    public CustomUserDetailsService(UserService userService) {
+    @Autowired
+    public CustomUserDetailsService(
+            UserService userService,
+            @Value("${resumejobservice.userservice.cache.max-size:10000}") long maxSize,
+            @Value("${resumejobservice.userservice.cache.ttl:PT1M}") Duration ttl,
+            @Value("${resumejobservice.userservice.cache.stale-grace:PT5M}") Duration staleGrace,
+            @Value("${resumejobservice.userservice.cache.negative-ttl:PT10S}") Duration negativeTtl,
+            MeterRegistry meterRegistry,
+            VerifiedCredentialCache verifiedCredentialCache,
+            @Qualifier("userLookupExecutor") Executor userLookupExecutor
+    ) {
+        //a first lookup gets its own virtual thread, the caller waits on it without holding a carrier.
+        //Refreshes stay on the bounded pool so a user service outage can't pile them up
+        this(userService, maxSize, ttl, staleGrace, negativeTtl, meterRegistry, verifiedCredentialCache, Ticker.systemTicker(),
+                runnable -> Thread.ofVirtual().name("user-lookup-load").start(runnable), userLookupExecutor);
+    }
+
+    CustomUserDetailsService(
+            UserService userService,
+            long maxSize,
+            Duration ttl,
+            Duration staleGrace,
+            Duration negativeTtl,
+            MeterRegistry meterRegistry,
+            VerifiedCredentialCache verifiedCredentialCache,
+            Ticker ticker,
+            Executor loadExecutor,
+            Executor refreshExecutor
+    ) {
         this.userService = userService;
+        this.verifiedCredentialCache = verifiedCredentialCache;
+        //after ttl a read still returns the entry and reloads it in the background,
+        //if the reload fails the old entry is kept until the grace window runs out
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(ttl)
+                .expireAfter(new Expiry<UserKey, CachedUser>() {
+                    @Override
+                    public long expireAfterCreate(UserKey key, CachedUser value, long currentTime) {
+                        return value.userDetails() == null ?
+                                negativeTtl.toNanos() :
+                                ttl.plus(staleGrace).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UserKey key, CachedUser value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UserKey key, CachedUser value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .executor(refreshExecutor)
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<CachedUser> asyncLoad(UserKey key, Executor executor) {
+                        return CompletableFuture.supplyAsync(() -> load(key), loadExecutor);
+                    }
+
+                    @Override
+                    public CompletableFuture<CachedUser> asyncReload(UserKey key, CachedUser oldValue, Executor executor) {
+                        return CompletableFuture.supplyAsync(() -> load(key), executor);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "userDetails");
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        var userOpt = userService.findUserById(username);
-
-        if (userOpt.isPresent()) {
-            return new CustomUserDetails(
-                    userOpt.get().id(),
-                    userOpt.get().password(),
-                    List.of(new SimpleGrantedAuthority("ROLE_USER"))
-            );
+        var cachedUser = join(users.get(new UserKey(username, RequestContextHolder.getHeader())));
+
+        if (cachedUser.userDetails() != null) {
+            return cachedUser.userDetails();
         } else {
             throw new UsernameNotFoundException("User not found");
         }
     }
+
+    public void evict(String username) {
+        users.asMap().keySet().removeIf(key -> key.username().equals(username));
+        verifiedCredentialCache.revoke(username);
+    }
+
+    private static CachedUser join(CompletableFuture<CachedUser> cachedUser) {
+        try {
+            return cachedUser.join();
+        } catch (CompletionException e) {
+            //the user service error as the load threw it, the authentication provider maps it
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private CachedUser load(UserKey key) {
+        //refreshes run on the cache executor, so the header has to travel with the key
+        return RequestContextHolder.withHeader(key.authorization(), () -> {
+            var userOpt = userService.findUserById(key.username());
+            if (userOpt.isEmpty()) {
+                //a 401 or 404 from the user service, a deleted user or a credential it no longer
+                //accepts. A changed password needs nothing, the new hash misses the digest
+                verifiedCredentialCache.revoke(key.username());
+            }
+            return new CachedUser(userOpt
+                    .map(user -> new CustomUserDetails(
+                            user.id(),
+                            user.password(),
+                            authorities(user.roles())
+                    ))
+                    .orElse(null));
+        });
+    }
+
+    //every user gets ROLE_USER, roles from the user service like ADMIN come on top of it
+    static List<SimpleGrantedAuthority> authorities(List<String> roles) {
+        var names = roles == null ? Stream.<String>empty() : roles.stream().filter(Objects::nonNull);
+        return Stream.concat(Stream.of("USER"), names)
+                .map(role -> role.toUpperCase(Locale.ROOT))
+                .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
+                .distinct()
+                .map(SimpleGrantedAuthority::new)
+                .toList();
+    }
+
+    //the user service lookup is made with the caller's credentials, so entries are
+    //per credential and a bad header can only ever poison its own negative entry
+    private record UserKey(String username, String authorization) {
+        @Override
+        public String toString() {
+            return "UserKey[username=" + username + "]";
+        }
+    }
+
+    private record CachedUser(CustomUserDetails userDetails) {
+    }
 }
@@ -0,0 +1,174 @@
+package com.gettimhired.config;
+
+import com.gettimhired.model.mongo.Job;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+@Endpoint(id = "jobindexes")
+public class JobIndexAuditor {
+    Logger log = LoggerFactory.getLogger(JobIndexAuditor.class);
+
+    private static final String SAMPLE = "index-audit";
+
+    //one entry per filter and sort JobRepository sends, deletes and updates explain the same as a find
+    static final List<QueryShape> QUERY_SHAPES = List.of(
+            new QueryShape("findAllByUserIdAndCandidateId",
+                    new Document("userId", SAMPLE).append("candidateId", SAMPLE), null),
+            new QueryShape("findAllByUserIdAndCandidateIdIn",
+                    new Document("userId", SAMPLE).append("candidateId", new Document("$in", List.of(SAMPLE))), null),
+            new QueryShape("findPageByUserIdAndCandidateId",
+                    new Document("userId", SAMPLE).append("candidateId", SAMPLE).append("$or", List.of(
+                            new Document("startDate", new Document("$lt", SAMPLE)),
+                            new Document("startDate", SAMPLE).append("_id", new Document("$gt", SAMPLE)),
+                            new Document("startDate", null))),
+                    new Document("startDate", -1).append("_id", 1)),
+            new QueryShape("findJobByIdAndUserId",
+                    new Document("_id", SAMPLE).append("userId", SAMPLE), null),
+            new QueryShape("findAllByIdInAndUserIdProjected",
+                    new Document("_id", new Document("$in", List.of(SAMPLE))).append("userId", SAMPLE), null),
+            new QueryShape("updateByIdAndUserIdAndCandidateId",
+                    new Document("_id", SAMPLE).append("userId", SAMPLE).append("candidateId", SAMPLE), null),
+            new QueryShape("findAllByCandidateIdAndEndDateIsNull",
+                    new Document("candidateId", SAMPLE).append("endDate", null), null),
+            new QueryShape("findAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc",
+                    new Document("candidateId", SAMPLE).append("endDate", new Document("$ne", null)),
+                    new Document("endDate", -1)),
+            new QueryShape("deleteByCandidateIdAndUserId",
+                    new Document("candidateId", SAMPLE).append("userId", SAMPLE), null)
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    public JobIndexAuditor(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @ReadOperation
+    public IndexAuditReport audit() {
+        var collection = mongoTemplate.getCollectionName(Job.class);
+        var queries = new ArrayList<QueryPlanReport>();
+        for (QueryShape shape : QUERY_SHAPES) {
+            var find = new Document("find", collection).append("filter", shape.filter());
+            if (shape.sort() != null) {
+                find.append("sort", shape.sort());
+            }
+            var explain = mongoTemplate.getDb().runCommand(new Document("explain", find).append("verbosity", "executionStats"));
+            queries.add(plan(shape.name(), explain));
+        }
+
+        var accesses = new LinkedHashMap<String, Long>();
+        mongoTemplate.getCollection(collection)
+                .aggregate(List.of(new Document("$indexStats", new Document())))
+                .forEach(stats -> accesses.put(stats.getString("name"), accessCount(stats)));
+
+        var report = report(queries, accesses);
+        report.queries().stream()
+                .filter(QueryPlanReport::collectionScan)
+                .forEach(query -> log.warn("Job query falls back to a collection scan |query: {}", query.name()));
+        if (!report.unusedIndexes().isEmpty()) {
+            log.info("Job indexes no audited query uses |indexes: {}", report.unusedIndexes());
+        }
+        return report;
+    }
+
+    static IndexAuditReport report(List<QueryPlanReport> queries, Map<String, Long> accesses) {
+        var used = new LinkedHashSet<String>();
+        queries.forEach(query -> used.addAll(query.indexes()));
+        var unused = accesses.keySet().stream()
+                .filter(name -> !"_id_".equals(name))
+                .filter(name -> !used.contains(name))
+                .toList();
+        var collectionScans = queries.stream()
+                .filter(QueryPlanReport::collectionScan)
+                .map(QueryPlanReport::name)
+                .toList();
+        return new IndexAuditReport(queries, unused, collectionScans, accesses);
+    }
+
+    static QueryPlanReport plan(String name, Document explain) {
+        var queryPlanner = explain.get("queryPlanner", Document.class);
+        var winningPlan = queryPlanner == null ? null : queryPlanner.get("winningPlan", Document.class);
+        //newer servers wrap the classic plan tree in queryPlan
+        if (winningPlan != null && winningPlan.containsKey("queryPlan")) {
+            winningPlan = winningPlan.get("queryPlan", Document.class);
+        }
+        var stages = new ArrayList<String>();
+        var indexes = new LinkedHashSet<String>();
+        walk(winningPlan, stages, indexes);
+
+        var executionStats = explain.get("executionStats", Document.class);
+        return new QueryPlanReport(
+                name,
+                stages.isEmpty() ? null : stages.get(0),
+                stages,
+                List.copyOf(indexes),
+                stages.contains("COLLSCAN"),
+                executionStats == null ? 0L : number(executionStats, "totalDocsExamined"),
+                executionStats == null ? 0L : number(executionStats, "totalKeysExamined"),
+                executionStats == null ? 0L : number(executionStats, "nReturned")
+        );
+    }
+
+    private static void walk(Document stage, List<String> stages, Set<String> indexes) {
+        if (stage == null) {
+            return;
+        }
+        if (stage.getString("stage") != null) {
+            stages.add(stage.getString("stage"));
+        }
+        if (stage.getString("indexName") != null) {
+            indexes.add(stage.getString("indexName"));
+        }
+        walk(stage.get("inputStage", Document.class), stages, indexes);
+        var inputStages = stage.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            inputStages.forEach(input -> walk(input, stages, indexes));
+        }
+    }
+
+    private static long accessCount(Document stats) {
+        var accesses = stats.get("accesses", Document.class);
+        return accesses == null ? 0L : number(accesses, "ops");
+    }
+
+    private static long number(Document document, String key) {
+        var value = document.get(key);
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    record QueryShape(String name, Document filter, Document sort) {
+    }
+
+    public record QueryPlanReport(
+            String name,
+            String winningStage,
+            List<String> stages,
+            List<String> indexes,
+            boolean collectionScan,
+            long docsExamined,
+            long keysExamined,
+            long returned
+    ) {
+    }
+
+    public record IndexAuditReport(
+            List<QueryPlanReport> queries,
+            List<String> unusedIndexes,
+            List<String> collectionScans,
+            Map<String, Long> indexAccesses
+    ) {
+    }
+}
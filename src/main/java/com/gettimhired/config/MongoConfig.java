@@ -0,0 +1,32 @@
+package com.gettimhired.config;
+
+import com.gettimhired.service.JobOutboxSink;
+import com.gettimhired.service.LoggingJobOutboxSink;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class MongoConfig {
+
+    //multi-document transactions need a replica set, the same as the change streams
+    @Bean
+    MongoTransactionManager mongoTransactionManager(MongoDatabaseFactory mongoDatabaseFactory) {
+        return new MongoTransactionManager(mongoDatabaseFactory);
+    }
+
+    @Bean
+    TransactionTemplate mongoTransactionTemplate(MongoTransactionManager mongoTransactionManager) {
+        return new TransactionTemplate(mongoTransactionManager);
+    }
+
+    //swap in a real broker by defining another JobOutboxSink bean
+    @Bean
+    @ConditionalOnMissingBean(JobOutboxSink.class)
+    JobOutboxSink jobOutboxSink() {
+        return new LoggingJobOutboxSink();
+    }
+}
@@ -1,29 +1,61 @@
 package com.gettimhired.config;
 
-import com.gettimhired.model.mongo.ChangeSet;
 import com.gettimhired.model.mongo.Job;
-import com.gettimhired.repository.ChangeSetRepository;
-import com.gettimhired.service.JobService;
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.model.mongo.JobOutboxSequence;
+import com.gettimhired.service.JobMigrationService;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 @Component
 public class MongoSchemaManager {
     Logger log = LoggerFactory.getLogger(MongoSchemaManager.class);
     private final MongoTemplate mongoTemplate;
-    private final ChangeSetRepository changeSetRepository;
+    private final ChangeSetRunner changeSetRunner;
 
-    private final JobService jobService;
+    private final JobMigrationService jobMigrationService;
+    private final Duration outboxRetention;
+    private final List<ChangeSetDefinition> changeSets = new CopyOnWriteArrayList<>();
+    private final Map<String, ChangeSetState> states = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "changesets");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public MongoSchemaManager(MongoTemplate mongoTemplate, ChangeSetRepository changeSetRepository, JobService jobService) {
+    public MongoSchemaManager(
+            MongoTemplate mongoTemplate,
+            ChangeSetRunner changeSetRunner,
+            JobMigrationService jobMigrationService,
+            @Value("${resumejobservice.jobs.outbox.retention:P7D}") Duration outboxRetention
+    ) {
         this.mongoTemplate = mongoTemplate;
-        this.changeSetRepository = changeSetRepository;
-        this.jobService = jobService;
+        this.changeSetRunner = changeSetRunner;
+        this.jobMigrationService = jobMigrationService;
+        this.outboxRetention = outboxRetention;
     }
 
     @PostConstruct
@@ -62,50 +94,202 @@ public class MongoSchemaManager {
                 "changeset-004",
                 "tim.schimandle",
                 "migrate jobs from resume-site",
-                jobService::migrateJobs
+                false,
+                leaseLost -> jobMigrationService.migrateJobs("changeset-004", leaseLost)
+        );
+        doChangeSet(
+                "changeset-005",
+                "tim.schimandle",
+                "add job index to userId, candidateId and id for keyset pagination",
+                () -> {
+                    var index = new Index()
+                            .on("userId", Sort.Direction.ASC).on("candidateId", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).background();
+                    mongoTemplate.indexOps(Job.class).ensureIndex(index);
+                }
+        );
+        doChangeSet(
+                "changeset-006",
+                "tim.schimandle",
+                "add job index to candidateId and endDate",
+                () -> {
+                    var index = new Index()
+                            .on("candidateId", Sort.Direction.ASC).on("endDate", Sort.Direction.DESC).background();
+                    mongoTemplate.indexOps(Job.class).ensureIndex(index);
+                }
+        );
+        doChangeSet(
+                "changeset-007",
+                "tim.schimandle",
+                "default missing job skills and achievements to empty arrays",
+                () -> {
+                    //$push and $pull fail on a null field, patches need real arrays
+                    mongoTemplate.updateMulti(Query.query(where("skills").is(null)), new Update().set("skills", List.of()), Job.class);
+                    mongoTemplate.updateMulti(Query.query(where("achievements").is(null)), new Update().set("achievements", List.of()), Job.class);
+                }
+        );
+        doChangeSet(
+                "changeset-008",
+                "tim.schimandle",
+                "drop job index on userId, the userId and candidateId index covers it as a prefix",
+                () -> dropJobIndexIfExists("userId_1")
+        );
+        doChangeSet(
+                "changeset-009",
+                "tim.schimandle",
+                "keep pre-images on job so change stream deletes carry the owner",
+                false,
+                () -> mongoTemplate.getDb().runCommand(new Document("collMod", mongoTemplate.getCollectionName(Job.class))
+                        .append("changeStreamPreAndPostImages", new Document("enabled", true)))
+        );
+        doChangeSet(
+                "changeset-010",
+                "tim.schimandle",
+                "add job outbox indexes for the relay and expiring published events",
+                () -> {
+                    //also creates the collection, older servers can't create one inside a transaction
+                    var indexOps = mongoTemplate.indexOps(JobOutboxEvent.class);
+                    indexOps.ensureIndex(new Index()
+                            .on("publishedAt", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).background());
+                    indexOps.ensureIndex(new Index()
+                            .on("publishedAt", Sort.Direction.ASC).named("publishedAt_ttl").expire(outboxRetention).background());
+                }
+        );
+
+        doChangeSet(
+                "changeset-011",
+                "tim.schimandle",
+                "drop job indexes on userId and candidateId and on candidateId, the keyset and endDate indexes cover them as prefixes",
+                () -> {
+                    //changeset-005 starts with userId and candidateId, changeset-006 starts with candidateId
+                    dropJobIndexIfExists("userId_1_candidateId_1");
+                    dropJobIndexIfExists("candidateId_1");
+                }
         );
+
+        doChangeSet(
+                "changeset-012",
+                "tim.schimandle",
+                "order pending job outbox events by sequence",
+                () -> {
+                    //the sequence is taken inside transactions, create its collection up front like the outbox
+                    if (!mongoTemplate.collectionExists(JobOutboxSequence.class)) {
+                        mongoTemplate.createCollection(JobOutboxSequence.class);
+                    }
+                    var indexOps = mongoTemplate.indexOps(JobOutboxEvent.class);
+                    indexOps.ensureIndex(new Index()
+                            .on("publishedAt", Sort.Direction.ASC).on("sequence", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).background());
+                    var exists = indexOps.getIndexInfo().stream().anyMatch(index -> "publishedAt_1__id_1".equals(index.getName()));
+                    if (exists) {
+                        indexOps.dropIndex("publishedAt_1__id_1");
+                    }
+                }
+        );
+
+        doChangeSet(
+                "changeset-013",
+                "tim.schimandle",
+                "page jobs on startDate and id, replacing the userId, candidateId and id keyset index",
+                () -> {
+                    var index = new Index()
+                            .on("userId", Sort.Direction.ASC).on("candidateId", Sort.Direction.ASC)
+                            .on("startDate", Sort.Direction.DESC).on("_id", Sort.Direction.ASC).background();
+                    mongoTemplate.indexOps(Job.class).ensureIndex(index);
+                    //the new index starts with userId and candidateId too, so it keeps covering those queries
+                    dropJobIndexIfExists("userId_1_candidateId_1__id_1");
+                }
+        );
+
+        doChangeSet(
+                "changeset-014",
+                "tim.schimandle",
+                "order pending job outbox events by candidate and sequence",
+                () -> {
+                    //sequences are per candidate now, they only order events within one
+                    var indexOps = mongoTemplate.indexOps(JobOutboxEvent.class);
+                    indexOps.ensureIndex(new Index()
+                            .on("publishedAt", Sort.Direction.ASC).on("candidateId", Sort.Direction.ASC)
+                            .on("sequence", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).background());
+                    var exists = indexOps.getIndexInfo().stream().anyMatch(index -> "publishedAt_1_sequence_1__id_1".equals(index.getName()));
+                    if (exists) {
+                        indexOps.dropIndex("publishedAt_1_sequence_1__id_1");
+                    }
+                }
+        );
+
+        //run in the background so a slow change set doesn't hold up startup, readiness
+        //reports the required ones through ChangeSetHealthIndicator
+        executor.execute(this::runChangeSets);
     }
 
     private void doChangeSet(String id, String author, String description, Runnable change) {
-        log.debug("Starting change set |id: {} |author: {} |description: {}", id, author, description);
-        var changeSet = new ChangeSet();
-        changeSet.setId(id);
-        changeSet.setAuthor(author);
-        changeSet.setDescription(description);
-        changeSet.setCreatedDate(System.currentTimeMillis());
-
-        var changeSetFromDb = changeSetRepository.findById(id);
-
-        if (
-                changeSetFromDb.isEmpty() || //change set doesn't exist
-                (!changeSetFromDb.get().isInProgress() && !changeSetFromDb.get().isCompleted()) //change is not complete and not in progress
-        ) {
+        doChangeSet(id, author, description, true, change);
+    }
+
+    private void doChangeSet(String id, String author, String description, boolean required, Runnable change) {
+        doChangeSet(id, author, description, required, leaseLost -> change.run());
+    }
+
+    private void doChangeSet(String id, String author, String description, boolean required, Consumer<BooleanSupplier> change) {
+        changeSets.add(new ChangeSetDefinition(id, author, description, required, change));
+        states.put(id, ChangeSetState.PENDING);
+    }
+
+    private void dropJobIndexIfExists(String name) {
+        var indexOps = mongoTemplate.indexOps(Job.class);
+        var exists = indexOps.getIndexInfo().stream().anyMatch(index -> name.equals(index.getName()));
+        if (exists) {
+            indexOps.dropIndex(name);
+        }
+    }
+
+    private void runChangeSets() {
+        //required change sets go first, in order, so readiness doesn't wait behind a long migration
+        var ordered = changeSets.stream()
+                .sorted(Comparator.comparing(ChangeSetDefinition::required).reversed())
+                .toList();
+        for (ChangeSetDefinition changeSet : ordered) {
+            log.debug("Starting change set |id: {} |author: {} |description: {}", changeSet.id(), changeSet.author(), changeSet.description());
+            states.put(changeSet.id(), ChangeSetState.RUNNING);
             try {
-                changeSetRepository.save(changeSet); //starts work
-                //do the work
-                log.info("Running change set |id: {} |author: {} |description: {}", id, author, description);
-                change.run();
-
-                //update the changeset
-                var changeSet1 = changeSetRepository.findById(changeSet.getId());
-                changeSet1.ifPresent(c -> {
-                    c.setInProgress(false);
-                    c.setCompleted(true);
-                    changeSetRepository.save(c);
-                });
-            } catch (Exception e) {
-                log.debug("Error with change set |id: {} |author: {} |description: {}", id, author, description);
-                //fail the changeset if there's an issue
-                changeSet.setInProgress(false);
-                changeSet.setCompleted(false);
-                changeSet.setDescription(e.getMessage());
-                changeSetRepository.save(changeSet);
-                //throw the exception again to stop initialization
-                throw e;
+                changeSetRunner.run(changeSet.id(), changeSet.author(), changeSet.description(), changeSet.change());
+                states.put(changeSet.id(), ChangeSetState.COMPLETED);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                states.put(changeSet.id(), ChangeSetState.FAILED);
+                return;
+            } catch (RuntimeException e) {
+                states.put(changeSet.id(), ChangeSetState.FAILED);
+                if (changeSet.required()) {
+                    //later change sets may depend on this one, stop here and leave readiness down
+                    return;
+                }
+                continue;
             }
-        } else {
-            //skip, already applied
+            log.debug("Completed change set |id: {} |author: {} |description: {}", changeSet.id(), changeSet.author(), changeSet.description());
         }
-        log.debug("Completed change set |id: {} |author: {} |description: {}", id, author, description);
+    }
+
+    public List<ChangeSetStatus> statuses() {
+        return changeSets.stream()
+                .map(changeSet -> new ChangeSetStatus(changeSet.id(), changeSet.required(), states.get(changeSet.id())))
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public enum ChangeSetState {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public record ChangeSetStatus(String id, boolean required, ChangeSetState state) {
+    }
+
+    private record ChangeSetDefinition(String id, String author, String description, boolean required, Consumer<BooleanSupplier> change) {
     }
 }
@@ -0,0 +1,22 @@
+package com.gettimhired.config;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MongoTopology {
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoTopology(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    //change streams and multi document transactions need a replica set or a sharded cluster,
+    //a standalone server rejects both
+    public boolean isReplicated() {
+        var hello = mongoTemplate.getDb().runCommand(new Document("hello", 1));
+        return hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+    }
+}
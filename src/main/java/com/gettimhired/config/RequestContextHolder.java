@@ -1,7 +1,11 @@
 package com.gettimhired.config;
 
+import java.util.function.Supplier;
+
 public class RequestContextHolder {
 
+    //a plain ThreadLocal, not inheritable, so virtual threads never copy it. Work handed to
+    //another thread gets the header through AuthorizationHeaderThreadLocalAccessor instead
     private static final ThreadLocal<String> authorization = new ThreadLocal<>();
 
     public static void setHeader(String headerValue) {
@@ -15,4 +19,24 @@ public class RequestContextHolder {
     public static void clear() {
         authorization.remove();
     }
+
+    //puts back what was there before instead of clearing, so a nested caller doesn't
+    //wipe the header out from under the outer one
+    public static void restore(String previousHeaderValue) {
+        if (previousHeaderValue == null) {
+            authorization.remove();
+        } else {
+            authorization.set(previousHeaderValue);
+        }
+    }
+
+    public static <T> T withHeader(String headerValue, Supplier<T> action) {
+        var previous = authorization.get();
+        authorization.set(headerValue);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
 }
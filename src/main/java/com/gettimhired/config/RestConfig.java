@@ -1,26 +1,104 @@
 package com.gettimhired.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
+
 @Configuration
 public class RestConfig {
 
     @Value("${resumejobservice.mainapp.host}")
     private String mainAppHost;
 
+    @Value("${resumejobservice.mainapp.read-timeout:PT2M}")
+    private Duration mainAppReadTimeout;
+
     @Value("${resumejobservice.userservice.host}")
     private String userServiceHost;
 
+    @Value("${resumejobservice.userservice.read-timeout:PT5S}")
+    private Duration userServiceReadTimeout;
+
+    @Value("${resumejobservice.http.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${resumejobservice.http.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${resumejobservice.http.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${resumejobservice.http.connection-request-timeout:PT1S}")
+    private Duration connectionRequestTimeout;
+
+    @Value("${resumejobservice.http.keep-alive:PT60S}")
+    private Duration keepAlive;
+
+    @Value("${resumejobservice.http.idle-eviction:PT30S}")
+    private Duration idleEviction;
+
     @Bean
-    RestClient resumeSiteRestClient() {
-        return RestClient.builder().baseUrl(mainAppHost).build();
+    RestClient resumeSiteRestClient(@Qualifier("resumeSiteRequestFactory") HttpComponentsClientHttpRequestFactory resumeSiteRequestFactory) {
+        return RestClient.builder()
+                .baseUrl(mainAppHost)
+                .requestFactory(resumeSiteRequestFactory)
+                .build();
     }
 
     @Bean
-    RestClient userServiceRestClient() {
-        return RestClient.builder().baseUrl(userServiceHost).build();
+    RestClient userServiceRestClient(@Qualifier("userServiceRequestFactory") HttpComponentsClientHttpRequestFactory userServiceRequestFactory) {
+        return RestClient.builder()
+                .baseUrl(userServiceHost)
+                .requestFactory(userServiceRequestFactory)
+                .build();
+    }
+
+    //beans so the context closes them on shutdown, destroy() closes the http client and its pool
+    @Bean(destroyMethod = "destroy")
+    HttpComponentsClientHttpRequestFactory resumeSiteRequestFactory(MeterRegistry meterRegistry) {
+        return pooledRequestFactory("resume-site", mainAppReadTimeout, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "destroy")
+    HttpComponentsClientHttpRequestFactory userServiceRequestFactory(MeterRegistry meterRegistry) {
+        return pooledRequestFactory("user-service", userServiceReadTimeout, meterRegistry);
+    }
+
+    //each dependency gets its own pool so a slow migration can't starve authentication
+    private HttpComponentsClientHttpRequestFactory pooledRequestFactory(String name, Duration readTimeout, MeterRegistry meterRegistry) {
+        var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+        var httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .setConnectionKeepAlive(TimeValue.of(keepAlive))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
     }
 }
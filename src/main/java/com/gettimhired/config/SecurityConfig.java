@@ -1,5 +1,6 @@
 package com.gettimhired.config;
 
+import com.gettimhired.service.TokenService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -13,9 +14,11 @@ import org.springframework.security.web.authentication.www.BasicAuthenticationFi
 @Configuration
 public class SecurityConfig {
 
-    private final CustomUserDetailsService customUserDetailsService;
-    public SecurityConfig(CustomUserDetailsService customUserDetailsService) {
-        this.customUserDetailsService = customUserDetailsService;
+    private final CachingAuthenticationProvider cachingAuthenticationProvider;
+    private final TokenService tokenService;
+    public SecurityConfig(CachingAuthenticationProvider cachingAuthenticationProvider, TokenService tokenService) {
+        this.cachingAuthenticationProvider = cachingAuthenticationProvider;
+        this.tokenService = tokenService;
     }
 
     @Bean
@@ -27,6 +30,8 @@ public class SecurityConfig {
                 .securityMatchers(matchers -> {
                     matchers.requestMatchers("/api/**");
                     matchers.requestMatchers("/graphql");
+                    matchers.requestMatchers("/graphql-ws");
+                    matchers.requestMatchers("/actuator/jobindexes");
                     matchers.requestMatchers("/swagger-ui/**");
                     matchers.requestMatchers("/");
                 })
@@ -37,11 +42,14 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> {
                     authorize.requestMatchers("/api/**").authenticated();
                     authorize.requestMatchers("/graphql").authenticated();
+                    authorize.requestMatchers("/graphql-ws").authenticated();
+                    authorize.requestMatchers("/actuator/jobindexes").hasRole("ADMIN");
                     authorize.requestMatchers("/swagger-ui/**").permitAll();
                     authorize.requestMatchers("/").permitAll();
                 })
                 .addFilterBefore(authorizationHeaderFilter(), BasicAuthenticationFilter.class)
-                .userDetailsService(customUserDetailsService)
+                .addFilterBefore(new BearerTokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
+                .authenticationProvider(cachingAuthenticationProvider)
                 .build();
     }
 
@@ -53,6 +61,8 @@ public class SecurityConfig {
                 .securityMatchers(matchers -> {
                     matchers.requestMatchers("/api/**");
                     matchers.requestMatchers("/graphql");
+                    matchers.requestMatchers("/graphql-ws");
+                    matchers.requestMatchers("/actuator/jobindexes");
                     matchers.requestMatchers("/swagger-ui/**");
                     matchers.requestMatchers("/");
                 })
@@ -63,11 +73,14 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> {
                     authorize.requestMatchers("/api/**").authenticated();
                     authorize.requestMatchers("/graphql").authenticated();
+                    authorize.requestMatchers("/graphql-ws").authenticated();
+                    authorize.requestMatchers("/actuator/jobindexes").hasRole("ADMIN");
                     authorize.requestMatchers("/swagger-ui/**").permitAll();
                     authorize.requestMatchers("/").permitAll();
                 })
                 .addFilterBefore(authorizationHeaderFilter(), BasicAuthenticationFilter.class)
-                .userDetailsService(customUserDetailsService)
+                .addFilterBefore(new BearerTokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
+                .authenticationProvider(cachingAuthenticationProvider)
                 .build();
     }
 
@@ -9,4 +9,8 @@ import org.springframework.context.annotation.Configuration;
         type = SecuritySchemeType.HTTP,
         name = "basicAuth",
         scheme = "basic")
+@SecurityScheme(
+        type = SecuritySchemeType.HTTP,
+        name = "bearerAuth",
+        scheme = "bearer")
 public class SpringDocConfig {}
@@ -0,0 +1,86 @@
+package com.gettimhired.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+
+@Component
+public class VerifiedCredentialCache {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, byte[]> verified;
+    private final SecretKeySpec key;
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedCredentialCache(
+            @Value("${resumejobservice.auth.credential-cache.max-size:10000}") long maxSize,
+            @Value("${resumejobservice.auth.credential-cache.ttl:PT5M}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        //per process key, the digests are useless outside this jvm
+        var secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.hits = Counter.builder("auth.credential.cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("auth.credential.cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        meterRegistry.gauge("auth.credential.cache.size", verified, Cache::estimatedSize);
+    }
+
+    public byte[] digest(String username, String rawPassword, String encodedPassword) {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            //length prefix each part so the boundaries can't be shifted
+            for (String part : new String[]{username, rawPassword, encodedPassword}) {
+                var bytes = part == null ? new byte[0] : part.getBytes(StandardCharsets.UTF_8);
+                mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                mac.update(bytes);
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to digest credentials", e);
+        }
+    }
+
+    public boolean isVerified(String username, byte[] digest) {
+        var cached = verified.getIfPresent(username);
+        if (cached != null && MessageDigest.isEqual(cached, digest)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    public void markVerified(String username, byte[] digest) {
+        verified.put(username, digest);
+    }
+
+    //CustomUserDetailsService calls this when the user service stops knowing the user, the ttl
+    //bounds anything it can't see
+    public void revoke(String username) {
+        verified.invalidate(username);
+    }
+}
@@ -0,0 +1,47 @@
+package com.gettimhired.controller;
+
+import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.CandidateJobsDTO;
+import com.gettimhired.service.JobService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@SecurityRequirement(name = "basicAuth")
+@SecurityRequirement(name = "bearerAuth")
+@RestController
+@RequestMapping("/api/jobs")
+public class CandidateJobsAPI {
+
+    Logger log = LoggerFactory.getLogger(CandidateJobsAPI.class);
+    private final JobService jobService;
+
+    public CandidateJobsAPI(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @GetMapping
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<List<CandidateJobsDTO>> getJobsForCandidates(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam String userId,
+            @RequestParam List<String> candidateIds
+    ) {
+        log.info("GET /api/jobs getJobsForCandidates userId={} candidates={}", userId, candidateIds.size());
+        try {
+            return ResponseEntity.ok(jobService.findAllJobsForUserAndCandidateIds(userId, candidateIds));
+        } catch (APIUpdateException e) {
+            return ResponseEntity.status(e.getHttpStatus()).build();
+        }
+    }
+}
@@ -1,47 +1,111 @@
 package com.gettimhired.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.JobBulkResultDTO;
 import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.dto.JobPageDTO;
+import com.gettimhired.model.dto.update.JobPatchDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
 import com.gettimhired.service.JobService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 
 @SecurityRequirement(name = "basicAuth")
+@SecurityRequirement(name = "bearerAuth")
 @RestController
 @RequestMapping("/api/candidates/{candidateId}/jobs")
 public class JobAPI {
 
     Logger log = LoggerFactory.getLogger(JobAPI.class);
     private final JobService jobService;
+    private final ObjectMapper objectMapper;
 
-    public JobAPI(JobService jobService) {
+    public JobAPI(JobService jobService, ObjectMapper objectMapper) {
         this.jobService = jobService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
     @PreAuthorize("isAuthenticated()")
-    public List<JobDTO> getAllJobs(
+    public ResponseEntity<List<JobDTO>> getAllJobs(
             @AuthenticationPrincipal UserDetails userDetails,
             @PathVariable String candidateId,
             @RequestParam String userId
     ) {
         log.info("GET /api/candidates/{candidateId}/jobs getAllJobs userId={} candidateId={}", userId, candidateId);
-        return jobService
+        var jobs = jobService
                 .findAllJobsForUserAndCandidateId(
                         userId,
                         candidateId
                 );
+        //spring answers If-None-Match with a 304 off this header before the body is written
+        return ResponseEntity.ok()
+                .eTag(eTag(jobs))
+                .body(jobs);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> streamAllJobs(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String candidateId,
+            @RequestParam String userId
+    ) {
+        log.info("GET /api/candidates/{candidateId}/jobs streamAllJobs userId={} candidateId={}", userId, candidateId);
+        StreamingResponseBody body = outputStream -> {
+            //one document at a time off the cursor, nothing is collected in memory
+            try (var jobs = jobService.streamAllJobsForUserAndCandidateId(userId, candidateId)) {
+                var first = true;
+                for (var iterator = jobs.iterator(); iterator.hasNext(); ) {
+                    outputStream.write(objectMapper.writeValueAsBytes(iterator.next()));
+                    outputStream.write('\n');
+                    if (first) {
+                        outputStream.flush();
+                        first = false;
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/page")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<JobPageDTO> getJobPage(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String candidateId,
+            @RequestParam String userId,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor
+    ) {
+        log.info("GET /api/candidates/{candidateId}/jobs/page getJobPage userId={} candidateId={} size={}", userId, candidateId, size);
+        try {
+            return ResponseEntity.ok(jobService.findJobPageForUserAndCandidateId(userId, candidateId, size, cursor));
+        } catch (APIUpdateException e) {
+            return ResponseEntity.status(e.getHttpStatus()).build();
+        }
     }
 
     @GetMapping("/{id}")
@@ -55,7 +119,7 @@ public class JobAPI {
         log.info("GET /api/candidates/{candidateId}/jobs/{id} getAllJobs userId={} candidateId={} id={}", userId, candidateId, id);
         var jobOpt = jobService.findJobByIdAndUserId(id, userId);
         return jobOpt
-                .map(ResponseEntity::ok)
+                .map(job -> ResponseEntity.ok().eTag(eTag(job)).body(job))
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
@@ -74,6 +138,26 @@ public class JobAPI {
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
     }
 
+    @PostMapping("/bulk")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<JobBulkResultDTO> createJobs(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody List<JobDTO> jobDTOs,
+            @PathVariable String candidateId,
+            @RequestParam String userId
+    ) {
+        if (jobDTOs == null || jobDTOs.isEmpty()) {
+            log.info("POST /api/candidates/{candidateId}/jobs/bulk createJobs userId={} candidateId={} empty body", userId, candidateId);
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("POST /api/candidates/{candidateId}/jobs/bulk createJobs userId={} candidateId={} size={}", userId, candidateId, jobDTOs.size());
+        try {
+            return ResponseEntity.ok(jobService.createJobs(userId, candidateId, jobDTOs));
+        } catch (APIUpdateException e) {
+            return ResponseEntity.status(e.getHttpStatus()).build();
+        }
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<JobDTO> updateJob(
@@ -81,16 +165,38 @@ public class JobAPI {
             @RequestBody @Valid JobUpdateDTO jobUpdateDTO,
             @PathVariable String id,
             @PathVariable String candidateId,
-            @RequestParam String userId
+            @RequestParam String userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
         log.info("PUT /api/candidates/{candidateId}/jobs/{id} updateJob userId={} candidateId={} id={}", userId, candidateId, id);
         try {
-            var jobDtoOpt = jobService.updateJob(id, userId, candidateId, jobUpdateDTO);
+            var jobDtoOpt = jobService.updateJob(id, userId, candidateId, jobUpdateDTO, expectedVersion(ifMatch, jobUpdateDTO.version()));
             return jobDtoOpt
-                    .map(ResponseEntity::ok)
+                    .map(job -> ResponseEntity.ok().eTag(eTag(job)).body(job))
                     .orElseGet(() -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
         } catch (APIUpdateException e) {
-            return ResponseEntity.status(e.getHttpStatus()).build();
+            return ResponseEntity.status(updateFailureStatus(e, ifMatch)).build();
+        }
+    }
+
+    @PatchMapping("/{id}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<JobDTO> patchJob(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody @Valid JobPatchDTO jobPatchDTO,
+            @PathVariable String id,
+            @PathVariable String candidateId,
+            @RequestParam String userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        log.info("PATCH /api/candidates/{candidateId}/jobs/{id} patchJob userId={} candidateId={} id={}", userId, candidateId, id);
+        try {
+            var jobDtoOpt = jobService.patchJob(id, userId, candidateId, jobPatchDTO, expectedVersion(ifMatch, jobPatchDTO.version()));
+            return jobDtoOpt
+                    .map(job -> ResponseEntity.ok().eTag(eTag(job)).body(job))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        } catch (APIUpdateException e) {
+            return ResponseEntity.status(updateFailureStatus(e, ifMatch)).build();
         }
     }
 
@@ -121,4 +227,52 @@ public class JobAPI {
                 ResponseEntity.ok().build() :
                 ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
+
+    //the version is bumped on every write so it identifies the representation without serializing it
+    private static String eTag(JobDTO job) {
+        return "\"" + Objects.requireNonNullElse(job.version(), 0L) + "\"";
+    }
+
+    private static String eTag(List<JobDTO> jobs) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (JobDTO job : jobs) {
+                digest.update((job.id() + ":" + Objects.requireNonNullElse(job.version(), 0L) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            var hash = Arrays.copyOf(digest.digest(), 16);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    //If-Match takes precedence over the version in the body
+    private static Long expectedVersion(String ifMatch, Long bodyVersion) {
+        var headerVersion = expectedVersion(ifMatch);
+        return headerVersion != null ? headerVersion : bodyVersion;
+    }
+
+    //a stale If-Match is a failed precondition (412), a stale body version is a conflict (409)
+    private static HttpStatus updateFailureStatus(APIUpdateException e, String ifMatch) {
+        if (e.getHttpStatus() == HttpStatus.CONFLICT && expectedVersion(ifMatch) != null) {
+            return HttpStatus.PRECONDITION_FAILED;
+        }
+        return e.getHttpStatus();
+    }
+
+    //only a single strong tag or * is supported, anything else can't match (412)
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        var tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                //fall through to the precondition failure
+            }
+        }
+        throw new APIUpdateException(HttpStatus.PRECONDITION_FAILED);
+    }
 }
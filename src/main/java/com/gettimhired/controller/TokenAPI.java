@@ -0,0 +1,39 @@
+package com.gettimhired.controller;
+
+import com.gettimhired.model.dto.TokenDTO;
+import com.gettimhired.service.TokenService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@SecurityRequirement(name = "basicAuth")
+@RestController
+@RequestMapping("/api/tokens")
+public class TokenAPI {
+
+    Logger log = LoggerFactory.getLogger(TokenAPI.class);
+    private final TokenService tokenService;
+
+    public TokenAPI(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @PostMapping
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<TokenDTO> createToken(Authentication authentication) {
+        log.info("POST /api/tokens createToken userId={}", authentication.getName());
+        if (authentication instanceof PreAuthenticatedAuthenticationToken) {
+            //a token can't be used to mint a new one, that would make it live forever
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(tokenService.issueToken(authentication.getName()));
+    }
+}
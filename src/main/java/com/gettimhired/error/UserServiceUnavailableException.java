@@ -0,0 +1,8 @@
+package com.gettimhired.error;
+
+public class UserServiceUnavailableException extends RuntimeException {
+
+    public UserServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.gettimhired.model.dto;
+
+import java.util.List;
+
+public record JobBulkItemDTO(
+        int index,
+        boolean created,
+        JobDTO job,
+        List<String> errors
+) {
+}
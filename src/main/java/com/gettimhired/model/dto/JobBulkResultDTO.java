@@ -0,0 +1,10 @@
+package com.gettimhired.model.dto;
+
+import java.util.List;
+
+public record JobBulkResultDTO(
+        int created,
+        int failed,
+        List<JobBulkItemDTO> items
+) {
+}
@@ -0,0 +1,10 @@
+package com.gettimhired.model.dto;
+
+public record JobChangeDTO(
+        String operation,
+        String id,
+        String userId,
+        String candidateId,
+        JobDTO job
+) {
+}
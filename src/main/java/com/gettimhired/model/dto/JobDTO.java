@@ -30,7 +30,8 @@ public record JobDTO(
         Boolean currentlyWorking,
         @NotBlank
         @Size(min = 1, max = 1000, message = "Reason for leaving must be between 1 and 1000 characters")
-        String reasonForLeaving
+        String reasonForLeaving,
+        Long version
 ) {
     public JobDTO(Job job) {
         this (
@@ -44,7 +45,8 @@ public record JobDTO(
                 job.skills(),
                 job.achievements(),
                 job.currentlyWorking(),
-                job.reasonForLeaving()
+                job.reasonForLeaving(),
+                job.currentVersion()
         );
     }
 
@@ -60,7 +62,8 @@ public record JobDTO(
                 job.skills(),
                 job.achievements(),
                 job.currentlyWorking(),
-                job.reasonForLeaving()
+                job.reasonForLeaving(),
+                null
         );
     }
 }
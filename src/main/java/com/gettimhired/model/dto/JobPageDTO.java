@@ -0,0 +1,9 @@
+package com.gettimhired.model.dto;
+
+import java.util.List;
+
+public record JobPageDTO(
+        List<JobDTO> jobs,
+        String nextCursor
+) {
+}
@@ -0,0 +1,7 @@
+package com.gettimhired.model.dto;
+
+public record TokenDTO(
+        String token,
+        Long expiresAt
+) {
+}
@@ -28,6 +28,7 @@ public record JobInputDTO(
         Boolean currentlyWorking,
         @NotBlank
         @Size(min = 1, max = 1000, message = "Reason for leaving must be between 1 and 1000 characters")
-        String reasonForLeaving
+        String reasonForLeaving,
+        Long version
 ) {
 }
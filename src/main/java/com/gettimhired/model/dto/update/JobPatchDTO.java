@@ -0,0 +1,32 @@
+package com.gettimhired.model.dto.update;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDate;
+import java.util.List;
+
+//every field is optional, null means leave it as it is. @Pattern is the null tolerant @NotBlank
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record JobPatchDTO(
+        @Pattern(regexp = ".*\\S.*", flags = Pattern.Flag.DOTALL, message = "Company name cannot be blank")
+        @Size(min = 1, max = 256, message = "Company name must be between 1 and 256 characters")
+        String companyName,
+        @Pattern(regexp = ".*\\S.*", flags = Pattern.Flag.DOTALL, message = "Title cannot be blank")
+        @Size(min = 1, max = 256, message = "Title must be between 1 and 256 characters")
+        String title,
+        LocalDate startDate,
+        LocalDate endDate,
+        Boolean clearEndDate,
+        Boolean currentlyWorking,
+        @Pattern(regexp = ".*\\S.*", flags = Pattern.Flag.DOTALL, message = "Reason for leaving cannot be blank")
+        @Size(min = 1, max = 1000, message = "Reason for leaving must be between 1 and 1000 characters")
+        String reasonForLeaving,
+        List<String> addSkills,
+        List<String> removeSkills,
+        List<String> addAchievements,
+        List<String> removeAchievements,
+        Long version
+) {
+}
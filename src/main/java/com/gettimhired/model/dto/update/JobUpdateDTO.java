@@ -26,7 +26,9 @@ public record JobUpdateDTO(
         Boolean currentlyWorking,
         @NotBlank
         @Size(min = 1, max = 1000, message = "Reason for leaving must be between 1 and 1000 characters")
-        String reasonForLeaving
+        String reasonForLeaving,
+        //the version the client read, a newer one on the document is a conflict (409)
+        Long version
 ) {
     public JobUpdateDTO(JobInputDTO job) {
         this(
@@ -37,7 +39,8 @@ public record JobUpdateDTO(
                 job.skills(),
                 job.achievements(),
                 job.currentlyWorking(),
-                job.reasonForLeaving()
+                job.reasonForLeaving(),
+                job.version()
         );
     }
 }
@@ -12,6 +12,9 @@ public class ChangeSet {
     private String author;
     private boolean inProgress = true;
     private boolean isCompleted = false;
+    private Long checkpoint;
+    private String lockOwner;
+    private Long lockExpiresAt;
 
     public String getId() {
         return id;
@@ -60,4 +63,28 @@ public class ChangeSet {
     public void setAuthor(String author) {
         this.author = author;
     }
+
+    public Long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(Long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public String getLockOwner() {
+        return lockOwner;
+    }
+
+    public void setLockOwner(String lockOwner) {
+        this.lockOwner = lockOwner;
+    }
+
+    public Long getLockExpiresAt() {
+        return lockExpiresAt;
+    }
+
+    public void setLockExpiresAt(Long lockExpiresAt) {
+        this.lockExpiresAt = lockExpiresAt;
+    }
 }
@@ -18,8 +18,8 @@ public record Job(
     List<String> skills,
     List<String> achievements,
     Boolean currentlyWorking,
-    String reasonForLeaving
-
+    String reasonForLeaving,
+    Long version
 ) {
     public Job(String userId, String candidateId, JobDTO jobDto) {
         this(
@@ -30,10 +30,16 @@ public record Job(
                 jobDto.title(),
                 jobDto.startDate(),
                 jobDto.endDate(),
-                jobDto.skills(),
-                jobDto.achievements(),
+                jobDto.skills() == null ? List.of() : jobDto.skills(),
+                jobDto.achievements() == null ? List.of() : jobDto.achievements(),
                 jobDto.currentlyWorking(),
-                jobDto.reasonForLeaving()
+                jobDto.reasonForLeaving(),
+                0L
         );
     }
+
+    //documents written before the version field existed count as version 0
+    public long currentVersion() {
+        return version == null ? 0L : version;
+    }
 }
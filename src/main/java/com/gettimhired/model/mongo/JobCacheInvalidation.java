@@ -0,0 +1,17 @@
+package com.gettimhired.model.mongo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document(collection = "jobCacheInvalidation")
+public record JobCacheInvalidation(
+    @Id ObjectId id,
+    String origin,
+    Long sequence,
+    String userId,
+    String candidateId,
+    String jobId,
+    Long publishedAt
+) {
+}
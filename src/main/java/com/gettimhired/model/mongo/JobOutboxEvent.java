@@ -0,0 +1,23 @@
+package com.gettimhired.model.mongo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document(collection = "jobOutbox")
+public record JobOutboxEvent(
+    @Id ObjectId id,
+    //allocated per candidate inside the writing transaction, so it follows commit order where the id doesn't
+    Long sequence,
+    String type,
+    String jobId,
+    String userId,
+    String candidateId,
+    Job job,
+    Long createdAt,
+    //stored as a date so the ttl index can expire published events
+    Instant publishedAt
+) {
+}
@@ -0,0 +1,12 @@
+package com.gettimhired.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document(collection = "jobOutboxLease")
+public record JobOutboxLease(
+    @Id String id,
+    String owner,
+    Long expiresAt
+) {
+}
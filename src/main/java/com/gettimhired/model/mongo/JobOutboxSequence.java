@@ -0,0 +1,12 @@
+package com.gettimhired.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document(collection = "jobOutboxSequence")
+public record JobOutboxSequence(
+    //the candidate id, each candidate has its own counter
+    @Id String id,
+    Long value
+) {
+}
@@ -5,5 +5,5 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ChangeSetRepository extends MongoRepository<ChangeSet, String> {
+public interface ChangeSetRepository extends MongoRepository<ChangeSet, String>, ChangeSetRepositoryCustom {
 }
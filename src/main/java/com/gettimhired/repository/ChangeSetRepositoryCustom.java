@@ -0,0 +1,16 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.ChangeSet;
+
+import java.time.Duration;
+import java.util.Optional;
+
+public interface ChangeSetRepositoryCustom {
+    Optional<ChangeSet> claim(String id, String author, String description, String owner, Duration lease);
+
+    boolean renew(String id, String owner, Duration lease);
+
+    boolean complete(String id, String owner);
+
+    void release(String id, String owner, String error);
+}
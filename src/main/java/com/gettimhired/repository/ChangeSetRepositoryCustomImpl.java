@@ -0,0 +1,90 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.ChangeSet;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ChangeSetRepositoryCustomImpl implements ChangeSetRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ChangeSetRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<ChangeSet> claim(String id, String author, String description, String owner, Duration lease) {
+        var now = System.currentTimeMillis();
+        //claimable when not completed and nobody holds a live lease, a missing lease also covers
+        //change sets left in progress by a node that died before leases existed
+        var query = Query.query(new Criteria().andOperator(
+                where("id").is(id),
+                where("isCompleted").ne(true),
+                new Criteria().orOperator(where("lockExpiresAt").is(null), where("lockExpiresAt").lt(now))
+        ));
+        var update = new Update()
+                .set("lockOwner", owner)
+                .set("lockExpiresAt", now + lease.toMillis())
+                .set("inProgress", true)
+                .setOnInsert("author", author)
+                .setOnInsert("description", description)
+                .setOnInsert("createdDate", now)
+                .setOnInsert("isCompleted", false);
+        try {
+            return Optional.ofNullable(mongoTemplate.findAndModify(
+                    query,
+                    update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    ChangeSet.class
+            ));
+        } catch (DuplicateKeyException e) {
+            //the document exists but didn't match, someone else holds it or it's done
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean renew(String id, String owner, Duration lease) {
+        var result = mongoTemplate.updateFirst(
+                Query.query(where("id").is(id).and("lockOwner").is(owner)),
+                Update.update("lockExpiresAt", System.currentTimeMillis() + lease.toMillis()),
+                ChangeSet.class
+        );
+        return result.getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean complete(String id, String owner) {
+        var result = mongoTemplate.updateFirst(
+                Query.query(where("id").is(id).and("lockOwner").is(owner)),
+                new Update()
+                        .set("isCompleted", true)
+                        .set("inProgress", false)
+                        .unset("lockOwner")
+                        .unset("lockExpiresAt"),
+                ChangeSet.class
+        );
+        return result.getMatchedCount() > 0;
+    }
+
+    @Override
+    public void release(String id, String owner, String error) {
+        var update = new Update()
+                .set("inProgress", false)
+                .unset("lockOwner")
+                .unset("lockExpiresAt");
+        if (error != null) {
+            update.set("description", error);
+        }
+        mongoTemplate.updateFirst(Query.query(where("id").is(id).and("lockOwner").is(owner)), update, ChangeSet.class);
+    }
+}
@@ -0,0 +1,10 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobOutboxRepository extends MongoRepository<JobOutboxEvent, ObjectId>, JobOutboxRepositoryCustom {
+}
@@ -0,0 +1,19 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import org.bson.types.ObjectId;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface JobOutboxRepositoryCustom {
+    List<JobOutboxEvent> findPending(int limit);
+
+    long markPublished(Collection<ObjectId> ids, Instant publishedAt);
+
+    boolean claimRelay(String owner, Duration lease);
+
+    long allocateSequence(String candidateId, int count);
+}
@@ -0,0 +1,85 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.model.mongo.JobOutboxLease;
+import com.gettimhired.model.mongo.JobOutboxSequence;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class JobOutboxRepositoryCustomImpl implements JobOutboxRepositoryCustom {
+
+    private static final String RELAY_LEASE_ID = "relay";
+
+    private final MongoTemplate mongoTemplate;
+
+    public JobOutboxRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<JobOutboxEvent> findPending(int limit) {
+        //commit order within each candidate, read off the publishedAt/candidateId/sequence index.
+        //Events written before the sequence have none, they sort first and fall back to the id
+        var query = Query.query(where("publishedAt").is(null))
+                .with(Sort.by(Sort.Direction.ASC, "candidateId", "sequence", "id"))
+                .limit(limit);
+        return mongoTemplate.find(query, JobOutboxEvent.class);
+    }
+
+    @Override
+    public long markPublished(Collection<ObjectId> ids, Instant publishedAt) {
+        return mongoTemplate.updateMulti(
+                Query.query(where("id").in(ids).and("publishedAt").is(null)),
+                Update.update("publishedAt", publishedAt),
+                JobOutboxEvent.class
+        ).getModifiedCount();
+    }
+
+    @Override
+    public long allocateSequence(String candidateId, int count) {
+        //called inside the writing transaction, the counter stays locked until commit so a later
+        //writer can't take a higher number and become visible first. One counter per candidate,
+        //ordering is only promised within a candidate and writers for different ones don't conflict
+        var sequence = mongoTemplate.findAndModify(
+                Query.query(where("id").is(candidateId)),
+                new Update().inc("value", count),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                JobOutboxSequence.class
+        );
+        return sequence.value() - count + 1;
+    }
+
+    @Override
+    public boolean claimRelay(String owner, Duration lease) {
+        var now = System.currentTimeMillis();
+        //the current holder renews with the same call, anyone else only gets it once it expired
+        var query = Query.query(new Criteria().andOperator(
+                where("id").is(RELAY_LEASE_ID),
+                new Criteria().orOperator(where("owner").is(owner), where("expiresAt").lt(now))
+        ));
+        try {
+            mongoTemplate.findAndModify(
+                    query,
+                    new Update().set("owner", owner).set("expiresAt", now + lease.toMillis()),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    JobOutboxLease.class
+            );
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
@@ -4,17 +4,25 @@ import com.gettimhired.model.dto.JobDTO;
 import com.gettimhired.model.mongo.Job;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface JobRepository extends MongoRepository<Job, String> {
+public interface JobRepository extends MongoRepository<Job, String>, JobRepositoryCustom {
     List<Job> findAllByUserIdAndCandidateId(String userId, String candidateId);
 
+    Stream<Job> streamAllByUserIdAndCandidateId(String userId, String candidateId);
+
+    List<Job> findAllByUserIdAndCandidateIdIn(String userId, Collection<String> candidateIds);
+
     Optional<Job> findJobByIdAndUserId(String id, String userId);
 
     void deleteByIdAndUserId(String id, String userId);
 
-    List<JobDTO> findAllByCandidateId(String candidateId);
+    Stream<JobDTO> streamAllByCandidateIdAndEndDateIsNull(String candidateId);
+
+    Stream<JobDTO> streamAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc(String candidateId);
 
     void deleteByCandidateIdAndUserId(String candidateId, String userId);
 }
@@ -0,0 +1,24 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.Job;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface JobRepositoryCustom {
+    List<Job> findAllByUserIdAndCandidateIdProjected(String userId, String candidateId, Collection<String> fields);
+
+    List<Job> findAllByIdInAndUserIdProjected(Collection<String> ids, String userId, Collection<String> fields);
+
+    List<Job> findPageByUserIdAndCandidateId(String userId, String candidateId, LocalDate afterStartDate, String afterId, int limit);
+
+    Map<Integer, String> insertAllUnordered(List<Job> jobs);
+
+    List<Job> insertAllIfAbsent(List<Job> jobs);
+
+    Optional<Job> updateByIdAndUserIdAndCandidateId(String id, String userId, String candidateId, Long expectedVersion, Update update);
+}
@@ -0,0 +1,138 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.Job;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class JobRepositoryCustomImpl implements JobRepositoryCustom {
+
+    private static final Set<String> JOB_FIELDS = Set.of(
+            "id",
+            "userId",
+            "candidateId",
+            "companyName",
+            "title",
+            "startDate",
+            "endDate",
+            "skills",
+            "achievements",
+            "currentlyWorking",
+            "reasonForLeaving",
+            "version"
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    public JobRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<Job> findAllByUserIdAndCandidateIdProjected(String userId, String candidateId, Collection<String> fields) {
+        var query = Query.query(where("userId").is(userId).and("candidateId").is(candidateId));
+        return mongoTemplate.find(project(query, fields), Job.class);
+    }
+
+    @Override
+    public List<Job> findAllByIdInAndUserIdProjected(Collection<String> ids, String userId, Collection<String> fields) {
+        var query = Query.query(where("id").in(ids).and("userId").is(userId));
+        return mongoTemplate.find(project(query, fields), Job.class);
+    }
+
+    @Override
+    public List<Job> findPageByUserIdAndCandidateId(String userId, String candidateId, LocalDate afterStartDate, String afterId, int limit) {
+        //newest first with the id breaking ties, seek past the last (startDate, id) instead of
+        //skipping so every page is one index range scan. A missing startDate sorts last
+        var criteria = where("userId").is(userId).and("candidateId").is(candidateId);
+        if (afterId != null && afterStartDate == null) {
+            criteria = criteria.and("startDate").is(null).and("id").gt(afterId);
+        } else if (afterId != null) {
+            criteria = criteria.orOperator(
+                    where("startDate").lt(afterStartDate),
+                    where("startDate").is(afterStartDate).and("id").gt(afterId),
+                    where("startDate").is(null)
+            );
+        }
+        var query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.desc("startDate"), Sort.Order.asc("id")))
+                .limit(limit);
+        return mongoTemplate.find(query, Job.class);
+    }
+
+    @Override
+    public Map<Integer, String> insertAllUnordered(List<Job> jobs) {
+        //unordered so one bad document doesn't stop the rest, failures come back by position in the list
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Job.class)
+                    .insert(jobs)
+                    .execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            return e.getErrors().stream()
+                    .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage));
+        }
+    }
+
+    @Override
+    public List<Job> insertAllIfAbsent(List<Job> jobs) {
+        //$setOnInsert only writes jobs that aren't there yet, a batch written again after a restart
+        //leaves anything a user has edited since alone, version included
+        var bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Job.class);
+        for (Job job : jobs) {
+            var document = new Document();
+            mongoTemplate.getConverter().write(job, document);
+            document.remove("_id");
+            var update = new Update();
+            document.forEach(update::setOnInsert);
+            bulkOps.upsert(Query.query(where("id").is(job.id())), update);
+        }
+        return bulkOps.execute().getUpserts().stream()
+                .map(upsert -> jobs.get(upsert.getIndex()))
+                .toList();
+    }
+
+    @Override
+    public Optional<Job> updateByIdAndUserIdAndCandidateId(String id, String userId, String candidateId, Long expectedVersion, Update update) {
+        //ownership and version are part of the filter so the check and the write are one atomic operation
+        var criteria = where("id").is(id).and("userId").is(userId).and("candidateId").is(candidateId);
+        if (expectedVersion != null) {
+            //documents written before versioning have no field and count as version 0
+            criteria = expectedVersion == 0L
+                    ? criteria.and("version").in(0L, null)
+                    : criteria.and("version").is(expectedVersion);
+        }
+        update.inc("version", 1L);
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(criteria),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                Job.class
+        ));
+    }
+
+    //fields that aren't on the document are ignored, the id always comes back
+    private static Query project(Query query, Collection<String> fields) {
+        fields.stream()
+                .filter(JOB_FIELDS::contains)
+                .forEach(field -> query.fields().include(field));
+        query.fields().include("id");
+        return query;
+    }
+}
@@ -0,0 +1,8 @@
+package com.gettimhired.resolver;
+
+import graphql.ErrorClassification;
+
+public enum JobErrorType implements ErrorClassification {
+    //the job changed after the client read it, re-read and retry with the new version
+    VERSION_CONFLICT
+}
@@ -1,44 +1,110 @@
 package com.gettimhired.resolver;
 
+import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.CandidateJobsDTO;
+import com.gettimhired.model.dto.JobBulkResultDTO;
+import com.gettimhired.model.dto.JobChangeDTO;
 import com.gettimhired.model.dto.JobDTO;
 import com.gettimhired.model.dto.input.JobInputDTO;
+import com.gettimhired.model.dto.update.JobPatchDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
+import com.gettimhired.service.JobChangePublisher;
 import com.gettimhired.service.JobService;
+import graphql.ErrorClassification;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.relay.Connection;
+import graphql.relay.DefaultConnection;
+import graphql.relay.DefaultConnectionCursor;
+import graphql.relay.DefaultEdge;
+import graphql.relay.DefaultPageInfo;
+import graphql.relay.Edge;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.dataloader.DataLoader;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
+import org.springframework.graphql.execution.ErrorType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Controller
 public class JobResolver {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
     Logger log = LoggerFactory.getLogger(JobResolver.class);
     private final JobService jobService;
+    private final JobChangePublisher jobChangePublisher;
 
-    public JobResolver(JobService jobService) {
+    public JobResolver(JobService jobService, JobChangePublisher jobChangePublisher, BatchLoaderRegistry batchLoaderRegistry) {
         this.jobService = jobService;
+        this.jobChangePublisher = jobChangePublisher;
+        //every getJobById in one execution is collected and resolved together, the DataLoader caches per request
+        batchLoaderRegistry.forTypePair(JobKey.class, JobDTO.class)
+                .registerMappedBatchLoader((keys, environment) -> Mono.fromCallable(() -> loadJobs(keys)));
     }
 
     @QueryMapping
     @PreAuthorize("isAuthenticated()")
-    public List<JobDTO> getJobs(@AuthenticationPrincipal UserDetails userDetails, @Argument String candidateId) {
+    public List<JobDTO> getJobs(@AuthenticationPrincipal UserDetails userDetails, @Argument String candidateId, DataFetchingFieldSelectionSet selectionSet) {
         log.info("GQL getJobs userId={} candidateId={}", userDetails.getUsername(), candidateId);
-        return jobService.findAllJobsForUserAndCandidateId(userDetails.getUsername(), candidateId);
+        return jobService.findAllJobsForUserAndCandidateId(userDetails.getUsername(), candidateId, selectedFields(selectionSet));
     }
 
     @QueryMapping
     @PreAuthorize("isAuthenticated()")
-    public JobDTO getJobById(@AuthenticationPrincipal UserDetails userDetails, @Argument String id) {
+    public CompletableFuture<JobDTO> getJobById(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Argument String id,
+            DataFetchingFieldSelectionSet selectionSet,
+            DataLoader<JobKey, JobDTO> jobLoader
+    ) {
         log.info("GQL getJobById userId={} id={}", userDetails.getUsername(), id);
-        return jobService.findJobByIdAndUserId(id, userDetails.getUsername()).orElse(null);
+        return jobLoader.load(new JobKey(id, userDetails.getUsername(), selectedFields(selectionSet)));
+    }
+
+    @QueryMapping
+    @PreAuthorize("isAuthenticated()")
+    public Connection<JobDTO> getJobsConnection(@AuthenticationPrincipal UserDetails userDetails, @Argument String candidateId, @Argument Integer first, @Argument String after) {
+        log.info("GQL getJobsConnection userId={} candidateId={} first={}", userDetails.getUsername(), candidateId, first);
+        var page = jobService.findJobPageForUserAndCandidateId(userDetails.getUsername(), candidateId, first == null ? DEFAULT_PAGE_SIZE : first, after);
+        List<Edge<JobDTO>> edges = page.jobs().stream()
+                .<Edge<JobDTO>>map(job -> new DefaultEdge<>(job, new DefaultConnectionCursor(jobService.encodeCursor(job))))
+                .toList();
+        var pageInfo = new DefaultPageInfo(
+                edges.isEmpty() ? null : edges.get(0).getCursor(),
+                edges.isEmpty() ? null : edges.get(edges.size() - 1).getCursor(),
+                after != null,
+                page.nextCursor() != null
+        );
+        return new DefaultConnection<>(edges, pageInfo);
+    }
+
+    @QueryMapping
+    @PreAuthorize("isAuthenticated()")
+    public List<CandidateJobsDTO> getJobsForCandidates(@AuthenticationPrincipal UserDetails userDetails, @Argument List<String> candidateIds) {
+        log.info("GQL getJobsForCandidates userId={} candidates={}", userDetails.getUsername(), candidateIds.size());
+        return jobService.findAllJobsForUserAndCandidateIds(userDetails.getUsername(), candidateIds);
     }
 
     @MutationMapping
@@ -48,6 +114,13 @@ public class JobResolver {
         return jobService.createJob(userDetails.getUsername(), job.candidateId(), new JobDTO(job)).orElse(null);
     }
 
+    @MutationMapping
+    @PreAuthorize("isAuthenticated()")
+    public JobBulkResultDTO createJobs(@AuthenticationPrincipal UserDetails userDetails, @Argument String candidateId, @Argument List<JobInputDTO> jobs) {
+        log.info("GQL createJobs userId={} candidateId={} size={}", userDetails.getUsername(), candidateId, jobs.size());
+        return jobService.createJobs(userDetails.getUsername(), candidateId, jobs.stream().map(JobDTO::new).toList());
+    }
+
     @MutationMapping
     @PreAuthorize("isAuthenticated()")
     public JobDTO updateJob(@AuthenticationPrincipal UserDetails userDetails, @Argument @Valid JobInputDTO job) {
@@ -55,10 +128,68 @@ public class JobResolver {
         return jobService.updateJob(job.id(), userDetails.getUsername(), job.candidateId(), new JobUpdateDTO(job)).orElse(null);
     }
 
+    @MutationMapping
+    @PreAuthorize("isAuthenticated()")
+    public JobDTO patchJob(@AuthenticationPrincipal UserDetails userDetails, @Argument String id, @Argument String candidateId, @Argument @Valid JobPatchDTO patch) {
+        log.info("GQL patchJob userId={} candidateId={} id={}", userDetails.getUsername(), candidateId, id);
+        return jobService.patchJob(id, userDetails.getUsername(), candidateId, patch, patch.version()).orElse(null);
+    }
+
     @MutationMapping
     @PreAuthorize("isAuthenticated()")
     public boolean deleteJob(@AuthenticationPrincipal UserDetails userDetails, @Argument String id) {
         log.info("GQL deleteJob userId={} id={}", userDetails.getUsername(), id);
         return jobService.deleteJob(id, userDetails.getUsername());
     }
+
+    @SubscriptionMapping
+    @PreAuthorize("isAuthenticated()")
+    public Flux<JobChangeDTO> jobChanged(@AuthenticationPrincipal UserDetails userDetails, @Argument String candidateId) {
+        log.info("GQL jobChanged userId={} candidateId={}", userDetails.getUsername(), candidateId);
+        return jobChangePublisher.changes(userDetails.getUsername(), candidateId);
+    }
+
+    @GraphQlExceptionHandler
+    public GraphQLError handleUpdateException(APIUpdateException e, DataFetchingEnvironment environment) {
+        ErrorClassification errorType = switch (e.getHttpStatus()) {
+            case CONFLICT -> JobErrorType.VERSION_CONFLICT;
+            case NOT_FOUND -> ErrorType.NOT_FOUND;
+            case FORBIDDEN -> ErrorType.FORBIDDEN;
+            case BAD_REQUEST -> ErrorType.BAD_REQUEST;
+            default -> ErrorType.INTERNAL_ERROR;
+        };
+        return GraphqlErrorBuilder.newError(environment)
+                .errorType(errorType)
+                .message(e.getHttpStatus().getReasonPhrase())
+                .build();
+    }
+
+    //one query per user with the union of the selected fields, normally a batch only has one user
+    private Map<JobKey, JobDTO> loadJobs(Set<JobKey> keys) {
+        Map<JobKey, JobDTO> jobs = new HashMap<>();
+        keys.stream()
+                .collect(Collectors.groupingBy(JobKey::userId))
+                .forEach((userId, userKeys) -> {
+                    var ids = userKeys.stream().map(JobKey::id).collect(Collectors.toSet());
+                    var fields = userKeys.stream().flatMap(key -> key.fields().stream()).collect(Collectors.toSet());
+                    var found = jobService.findJobsByIdsAndUserId(ids, userId, fields);
+                    userKeys.forEach(key -> {
+                        var job = found.get(key.id());
+                        if (job != null) {
+                            jobs.put(key, job);
+                        }
+                    });
+                });
+        return jobs;
+    }
+
+    //only load what the client asked for, the repository ignores anything that isn't a job field
+    private static Set<String> selectedFields(DataFetchingFieldSelectionSet selectionSet) {
+        return selectionSet.getImmediateFields().stream()
+                .map(SelectedField::getName)
+                .collect(Collectors.toSet());
+    }
+
+    public record JobKey(String id, String userId, Set<String> fields) {
+    }
 }
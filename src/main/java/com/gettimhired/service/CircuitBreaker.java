@@ -0,0 +1,96 @@
+package com.gettimhired.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+class CircuitBreaker {
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+    private final MeterRegistry meterRegistry;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, int halfOpenProbes, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(name + ".circuitbreaker.state", this, c -> c.getState().ordinal())
+                .description("0 closed, 1 half open, 2 open")
+                .register(meterRegistry);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            //only a few probes go through while we find out if the dependency is back
+            if (probesInFlight >= halfOpenProbes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    //the call never happened, so it says nothing about the dependency
+    synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State next) {
+        log.warn("Circuit breaker {} |from: {} |to: {}", name, state, next);
+        meterRegistry.counter(name + ".circuitbreaker.transitions", "from", state.name(), "to", next.name()).increment();
+        state = next;
+        consecutiveFailures = 0;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+    }
+}
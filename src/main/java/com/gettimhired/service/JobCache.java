@@ -0,0 +1,110 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.dto.JobDTO;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Component
+public class JobCache {
+
+    //async so a load never runs inside the map's compute, blocking io under that lock would pin
+    //a virtual thread to its carrier and stall every other caller on the same bin
+    private final AsyncCache<CandidateKey, List<JobDTO>> jobsByCandidate;
+    //bumped before every invalidation, a put of data read outside the cache checks it first
+    private final AtomicLong generation = new AtomicLong();
+
+    public JobCache(
+            @Value("${resumejobservice.jobs.cache.max-weight:100000}") long maxWeight,
+            @Value("${resumejobservice.jobs.cache.ttl:PT10M}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        //weighed by job count so one candidate with a huge history can't crowd out the rest unnoticed
+        this.jobsByCandidate = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .<CandidateKey, List<JobDTO>>weigher((key, jobs) -> Math.max(1, jobs.size()))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, jobsByCandidate, "jobsByCandidate");
+    }
+
+    public List<JobDTO> getJobs(String userId, String candidateId, Supplier<List<JobDTO>> loader) {
+        //the compute only installs an empty future, the caller that installed it loads on its own
+        //thread and the rest wait on the future. An invalidate while it loads removes the future,
+        //so the result completes a future the cache no longer holds and older data can't come back
+        var pending = new CompletableFuture<List<JobDTO>>();
+        var jobs = jobsByCandidate.get(new CandidateKey(userId, candidateId), (key, executor) -> pending);
+        if (jobs == pending) {
+            try {
+                pending.complete(loader.get());
+            } catch (RuntimeException e) {
+                //a failed future is dropped from the cache, the next read loads again
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return join(jobs);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    //for data read before this call, outside the compute. If anything was invalidated since
+    //readGeneration the data may predate that write, so it's returned but not cached. The check
+    //runs inside the compute, an invalidate that comes after it removes the entry as usual
+    public void putIfUnchanged(String userId, String candidateId, List<JobDTO> jobs, long readGeneration) {
+        jobsByCandidate.asMap().compute(new CandidateKey(userId, candidateId), (key, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return generation.get() == readGeneration ? CompletableFuture.completedFuture(jobs) : null;
+        });
+    }
+
+    //only a finished load counts, a read doesn't wait on someone else's query
+    public List<JobDTO> getJobsIfPresent(String userId, String candidateId) {
+        var jobs = jobsByCandidate.getIfPresent(new CandidateKey(userId, candidateId));
+        if (jobs == null || !jobs.isDone() || jobs.isCompletedExceptionally()) {
+            return null;
+        }
+        return jobs.join();
+    }
+
+    public void invalidate(String userId, String candidateId) {
+        generation.incrementAndGet();
+        jobsByCandidate.synchronous().invalidate(new CandidateKey(userId, candidateId));
+    }
+
+    public void invalidateUser(String userId) {
+        generation.incrementAndGet();
+        jobsByCandidate.asMap().keySet()
+                .removeIf(key -> key.userId().equals(userId));
+    }
+
+    private static List<JobDTO> join(CompletableFuture<List<JobDTO>> jobs) {
+        try {
+            return jobs.join();
+        } catch (CompletionException e) {
+            //the loading caller's own exception, rethrown as is for everyone waiting on it
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record CandidateKey(String userId, String candidateId) {
+    }
+}
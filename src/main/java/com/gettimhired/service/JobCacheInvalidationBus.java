@@ -0,0 +1,221 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.mongo.JobCacheInvalidation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.data.mongodb.core.messaging.TailableCursorRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Service
+public class JobCacheInvalidationBus implements SmartLifecycle {
+
+    Logger log = LoggerFactory.getLogger(JobCacheInvalidationBus.class);
+    private final MongoTemplate mongoTemplate;
+    private final JobCache jobCache;
+    private final boolean enabled;
+    private final Duration retryDelay;
+    private final long collectionSize;
+    private final String origin;
+    private final Timer lag;
+    private final Counter published;
+    private final Counter publishFailures;
+    private final Counter received;
+    private final AtomicBoolean retryPending = new AtomicBoolean();
+    private final AtomicLong sequence = new AtomicLong();
+    //the highest sequence seen from each other node, a resubscription only asks for what came after
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retries;
+    private MessageListenerContainer container;
+    private Subscription subscription;
+    private volatile boolean running;
+    private volatile long startedAt;
+    private volatile boolean collectionReady;
+
+    public JobCacheInvalidationBus(
+            MongoTemplate mongoTemplate,
+            JobCache jobCache,
+            MeterRegistry meterRegistry,
+            @Value("${resumejobservice.jobs.cache.invalidation.enabled:true}") boolean enabled,
+            @Value("${resumejobservice.jobs.cache.invalidation.retry-delay:PT5S}") Duration retryDelay,
+            @Value("${resumejobservice.jobs.cache.invalidation.collection-size:16777216}") long collectionSize
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobCache = jobCache;
+        this.enabled = enabled;
+        this.retryDelay = retryDelay;
+        this.collectionSize = collectionSize;
+        //unique per process so a node can skip its own broadcasts, it already evicted locally
+        this.origin = UUID.randomUUID().toString();
+        //wall clocks of two nodes, so skew shows up here too
+        this.lag = Timer.builder("jobs.cache.invalidation.lag")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.published = Counter.builder("jobs.cache.invalidation")
+                .tag("result", "published")
+                .register(meterRegistry);
+        this.publishFailures = Counter.builder("jobs.cache.invalidation")
+                .tag("result", "publish_failed")
+                .register(meterRegistry);
+        this.received = Counter.builder("jobs.cache.invalidation")
+                .tag("result", "received")
+                .register(meterRegistry);
+        this.retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "job-cache-invalidation-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //a null candidateId means the candidate isn't known and every entry of the user goes
+    public void publish(String userId, String candidateId, String jobId) {
+        if (!enabled) {
+            return;
+        }
+        if (!collectionReady) {
+            publishFailures.increment();
+            log.debug("Job cache invalidation collection isn't ready, skipping userId={} candidateId={}", userId, candidateId);
+            return;
+        }
+        try {
+            mongoTemplate.insert(new JobCacheInvalidation(null, origin, sequence.incrementAndGet(), userId, candidateId, jobId,
+                    System.currentTimeMillis()));
+            published.increment();
+        } catch (Exception e) {
+            //the write already happened, other nodes fall back to the cache ttl
+            publishFailures.increment();
+            log.warn("Unable to publish job cache invalidation userId={} candidateId={} jobId={}", userId, candidateId, jobId, e);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        startedAt = System.currentTimeMillis();
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        container.start();
+        listen();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        retries.shutdownNow();
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private synchronized void listen() {
+        retryPending.set(false);
+        if (!running) {
+            return;
+        }
+        if (subscription != null) {
+            container.remove(subscription);
+        }
+        try {
+            ensureCappedCollection();
+        } catch (Exception e) {
+            onError(e);
+            return;
+        }
+        var request = TailableCursorRequest.builder(this::onMessage)
+                .collection(mongoTemplate.getCollectionName(JobCacheInvalidation.class))
+                .filter(resumeQuery())
+                .build();
+        subscription = container.register(request, JobCacheInvalidation.class, this::onError);
+    }
+
+    //positions are per node sequences, not ids, an id carries the publisher's clock and one from a
+    //node with a slow clock would sort before ids already seen. Only the first subscription replays
+    //the capped history, a node whose concurrent publishes land out of order can lose one to the ttl
+    Query resumeQuery() {
+        var knownOrigins = new ArrayList<>(lastSeen.keySet());
+        knownOrigins.add(origin);
+        var positions = new ArrayList<Criteria>();
+        //a node we haven't heard from yet, everything it published is new
+        positions.add(where("origin").nin(knownOrigins));
+        lastSeen.forEach((node, seen) -> positions.add(where("origin").is(node).and("sequence").gt(seen)));
+        return Query.query(new Criteria().orOperator(positions));
+    }
+
+    void ensureCappedCollection() {
+        //an insert would create a plain collection that can't be tailed, so this has to exist first
+        var name = mongoTemplate.getCollectionName(JobCacheInvalidation.class);
+        if (!mongoTemplate.collectionExists(name)) {
+            try {
+                mongoTemplate.createCollection(name, CollectionOptions.empty().capped().size(collectionSize));
+            } catch (DataAccessException e) {
+                //another node created it first
+                if (!mongoTemplate.collectionExists(name)) {
+                    throw e;
+                }
+            }
+        }
+        collectionReady = true;
+    }
+
+    void onMessage(Message<?, JobCacheInvalidation> message) {
+        var invalidation = message.getBody();
+        if (invalidation == null) {
+            return;
+        }
+        if (origin.equals(invalidation.origin())) {
+            return;
+        }
+        if (invalidation.sequence() != null) {
+            lastSeen.merge(invalidation.origin(), invalidation.sequence(), Math::max);
+        }
+        if (invalidation.candidateId() == null) {
+            jobCache.invalidateUser(invalidation.userId());
+        } else {
+            jobCache.invalidate(invalidation.userId(), invalidation.candidateId());
+        }
+        received.increment();
+        if (invalidation.publishedAt() != null && invalidation.publishedAt() >= startedAt) {
+            lag.record(Math.max(0L, System.currentTimeMillis() - invalidation.publishedAt()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onError(Throwable e) {
+        log.warn("Job cache invalidation cursor failed, retrying |retryDelay: {}", retryDelay, e);
+        if (running && retryPending.compareAndSet(false, true)) {
+            retries.schedule(this::listen, retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.gettimhired.service;
+
+import com.gettimhired.config.MongoTopology;
+import com.gettimhired.model.dto.JobChangeDTO;
+import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.mongo.Job;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+//delivery is best effort. One change stream feeds every subscriber and only the stream itself
+//resumes after a dropped cursor, a subscriber that reconnects starts from live changes and one
+//that falls more than buffer-size behind loses its oldest changes (DROP_OLDEST)
+@Service
+public class JobChangePublisher implements SmartLifecycle {
+
+    Logger log = LoggerFactory.getLogger(JobChangePublisher.class);
+    private final MongoTemplate mongoTemplate;
+    private final MongoTopology mongoTopology;
+    private final boolean enabled;
+    private final int bufferSize;
+    private final Duration retryDelay;
+    //every subscriber shares this one sink, a subscriber that can't keep up drops on its own buffer
+    private final Sinks.Many<JobChangeDTO> changes = Sinks.many().multicast().directBestEffort();
+    private final AtomicReference<BsonValue> resumeToken = new AtomicReference<>();
+    private final AtomicBoolean retryPending = new AtomicBoolean();
+    private final ScheduledExecutorService retries;
+    private MessageListenerContainer container;
+    private Subscription subscription;
+    private volatile boolean running;
+
+    public JobChangePublisher(
+            MongoTemplate mongoTemplate,
+            MongoTopology mongoTopology,
+            @Value("${resumejobservice.jobs.changes.enabled:false}") boolean enabled,
+            @Value("${resumejobservice.jobs.changes.buffer-size:256}") int bufferSize,
+            @Value("${resumejobservice.jobs.changes.retry-delay:PT5S}") Duration retryDelay
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.mongoTopology = mongoTopology;
+        this.enabled = enabled;
+        this.bufferSize = bufferSize;
+        this.retryDelay = retryDelay;
+        this.retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "job-change-stream-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Flux<JobChangeDTO> changes(String userId, String candidateId) {
+        return changes.asFlux()
+                .filter(change -> userId.equals(change.userId()) && candidateId.equals(change.candidateId()))
+                .onBackpressureBuffer(
+                        bufferSize,
+                        dropped -> log.debug("Dropped job change for slow subscriber |id: {} |candidateId: {}", dropped.id(), candidateId),
+                        BufferOverflowStrategy.DROP_OLDEST
+                );
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!mongoTopology.isReplicated()) {
+                //a standalone server has no change streams, retrying would only fail every retry-delay
+                log.warn("Job change subscriptions are off, change streams need a replica set or sharded cluster");
+                return;
+            }
+        } catch (RuntimeException e) {
+            //mongo isn't reachable yet, the stream retries until it is
+            log.warn("Could not check the mongo topology for job changes, listening anyway", e);
+        }
+        running = true;
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        container.start();
+        listen();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        retries.shutdownNow();
+        if (container != null) {
+            container.stop();
+        }
+        changes.tryEmitComplete();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private synchronized void listen() {
+        retryPending.set(false);
+        if (!running) {
+            return;
+        }
+        if (subscription != null) {
+            container.remove(subscription);
+        }
+        var builder = ChangeStreamRequest.builder(this::onMessage)
+                .collection(mongoTemplate.getCollectionName(Job.class))
+                .filter(Aggregation.newAggregation(Aggregation.match(where("operationType").in("insert", "update", "replace", "delete"))))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                //deletes only carry the key, the pre-image tells us whose job it was when the collection keeps one
+                .fullDocumentBeforeChangeLookup(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        var token = resumeToken.get();
+        if (token != null) {
+            //pick up after the last change we saw so a dropped cursor doesn't lose events
+            builder.resumeAfter(token);
+        }
+        subscription = container.register(builder.build(), Job.class, this::onError);
+        log.info("Listening for job changes |resumed: {}", token != null);
+    }
+
+    void onMessage(Message<ChangeStreamDocument<Document>, Job> message) {
+        var raw = message.getRaw();
+        if (raw == null) {
+            return;
+        }
+        resumeToken.set(raw.getResumeToken());
+        var change = toChange(raw.getOperationType(), raw, message.getBody());
+        if (change != null) {
+            changes.tryEmitNext(change);
+        }
+    }
+
+    private JobChangeDTO toChange(OperationType operationType, ChangeStreamDocument<Document> raw, Job job) {
+        if (operationType == OperationType.DELETE) {
+            var before = raw.getFullDocumentBeforeChange();
+            var key = raw.getDocumentKey();
+            if (before == null || key == null || !key.containsKey("_id")) {
+                log.debug("Skipping job delete without a pre-image");
+                return null;
+            }
+            return new JobChangeDTO(
+                    operationType.name(),
+                    key.get("_id").asString().getValue(),
+                    before.getString("userId"),
+                    before.getString("candidateId"),
+                    null
+            );
+        }
+        if (job == null) {
+            //the document was deleted again before the update lookup ran
+            return null;
+        }
+        return new JobChangeDTO(operationType.name(), job.id(), job.userId(), job.candidateId(), new JobDTO(job));
+    }
+
+    private void onError(Throwable e) {
+        log.warn("Job change stream failed, retrying |retryDelay: {}", retryDelay, e);
+        if (running && retryPending.compareAndSet(false, true)) {
+            retries.schedule(this::listen, retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.gettimhired.service;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.mongo.ChangeSet;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.repository.ChangeSetRepository;
+import com.gettimhired.repository.JobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Service
+public class JobMigrationService {
+
+    Logger log = LoggerFactory.getLogger(JobMigrationService.class);
+    private final RestClient resumeSiteRestClient;
+    private final ObjectMapper objectMapper;
+    private final JobRepository jobRepository;
+    private final ChangeSetRepository changeSetRepository;
+    private final MongoTemplate mongoTemplate;
+    private final JobCache jobCache;
+    private final JobCacheInvalidationBus jobCacheInvalidationBus;
+    private final int batchSize;
+
+    public JobMigrationService(
+            RestClient resumeSiteRestClient,
+            ObjectMapper objectMapper,
+            JobRepository jobRepository,
+            ChangeSetRepository changeSetRepository,
+            MongoTemplate mongoTemplate,
+            JobCache jobCache,
+            JobCacheInvalidationBus jobCacheInvalidationBus,
+            @Value("${resumejobservice.jobs.migration.batch-size:500}") int batchSize
+    ) {
+        this.resumeSiteRestClient = resumeSiteRestClient;
+        this.objectMapper = objectMapper;
+        this.jobRepository = jobRepository;
+        this.changeSetRepository = changeSetRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.jobCache = jobCache;
+        this.jobCacheInvalidationBus = jobCacheInvalidationBus;
+        this.batchSize = batchSize;
+    }
+
+    //leaseLost turns true once another node may have taken the change set over, stop before the next write
+    public void migrateJobs(String changeSetId, BooleanSupplier leaseLost) {
+        //the checkpoint is how many jobs of the export are already written, the export is
+        //assumed to come back in a stable order so a restart skips them instead of starting over
+        var checkpoint = changeSetRepository.findById(changeSetId)
+                .map(ChangeSet::getCheckpoint)
+                .orElse(0L);
+        if (checkpoint > 0) {
+            log.info("Resuming job migration |changeSetId: {} |checkpoint: {}", changeSetId, checkpoint);
+        }
+
+        resumeSiteRestClient.get()
+                .uri("/api/candidates/all/jobs/migrate")
+                .exchange((request, response) -> {
+                    if (!response.getStatusCode().is2xxSuccessful()) {
+                        throw new IllegalStateException("Job migration export failed with status " + response.getStatusCode());
+                    }
+                    //parse one job at a time off the wire so the heap holds a batch, not the whole export
+                    try (var parser = objectMapper.createParser(response.getBody())) {
+                        if (parser.nextToken() != JsonToken.START_ARRAY) {
+                            log.info("Job migration export was empty |changeSetId: {}", changeSetId);
+                            return null;
+                        }
+                        var startedAt = System.nanoTime();
+                        var position = 0L;
+                        var written = 0L;
+                        var batch = new ArrayList<Job>(batchSize);
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            if (position < checkpoint) {
+                                parser.skipChildren();
+                                position++;
+                                continue;
+                            }
+                            batch.add(toJob(objectMapper.readValue(parser, JobDTO.class)));
+                            position++;
+                            if (batch.size() >= batchSize) {
+                                stopIfLeaseLost(changeSetId, leaseLost, position, written);
+                                written += writeBatch(changeSetId, batch, position, startedAt, written);
+                            }
+                        }
+                        if (!batch.isEmpty()) {
+                            stopIfLeaseLost(changeSetId, leaseLost, position, written);
+                            written += writeBatch(changeSetId, batch, position, startedAt, written);
+                        }
+                        log.info("Job migration finished |changeSetId: {} |written: {} |total: {} |elapsedMs: {}",
+                                changeSetId, written, position, (System.nanoTime() - startedAt) / 1_000_000);
+                    }
+                    return null;
+                });
+    }
+
+    private void stopIfLeaseLost(String changeSetId, BooleanSupplier leaseLost, long position, long written) {
+        if (leaseLost.getAsBoolean()) {
+            log.warn("Stopping job migration, the change set lease is gone |changeSetId: {} |written: {} |position: {}",
+                    changeSetId, written, position);
+            throw new CancellationException("Lost the lease on change set " + changeSetId);
+        }
+    }
+
+    private int writeBatch(String changeSetId, List<Job> batch, long position, long startedAt, long writtenSoFar) {
+        var size = batch.size();
+        //jobs already in mongo are skipped, they may have been edited since the first attempt
+        var inserted = jobRepository.insertAllIfAbsent(batch);
+        batch.clear();
+        //a cached candidate list from before the insert would hide the new jobs until the ttl
+        inserted.stream()
+                .map(job -> new CandidateKey(job.userId(), job.candidateId()))
+                .distinct()
+                .forEach(key -> {
+                    jobCache.invalidate(key.userId(), key.candidateId());
+                    jobCacheInvalidationBus.publish(key.userId(), key.candidateId(), null);
+                });
+        //only move the checkpoint once the batch is durable, a crash before this rewrites the same ids
+        mongoTemplate.updateFirst(
+                Query.query(where("id").is(changeSetId)),
+                Update.update("checkpoint", position),
+                ChangeSet.class
+        );
+        var written = writtenSoFar + size;
+        var elapsedNanos = Math.max(System.nanoTime() - startedAt, 1L);
+        log.info("Job migration progress |changeSetId: {} |written: {} |checkpoint: {} |jobsPerSecond: {}",
+                changeSetId, written, position, written * 1_000_000_000L / elapsedNanos);
+        return size;
+    }
+
+    private Job toJob(JobDTO jobDto) {
+        return new Job(
+                jobDto.id(),
+                jobDto.userId(),
+                jobDto.candidateId(),
+                jobDto.companyName(),
+                jobDto.title(),
+                jobDto.startDate(),
+                jobDto.endDate(),
+                Objects.requireNonNullElse(jobDto.skills(), List.of()),
+                Objects.requireNonNullElse(jobDto.achievements(), List.of()),
+                jobDto.currentlyWorking(),
+                jobDto.reasonForLeaving(),
+                0L
+        );
+    }
+
+    private record CandidateKey(String userId, String candidateId) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.gettimhired.service;
+
+import com.gettimhired.config.MongoTopology;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.repository.JobOutboxRepository;
+import com.mongodb.MongoException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@Component
+public class JobOutbox {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String DELETED = "DELETED";
+    private static final int TRANSACTION_ATTEMPTS = 5;
+    private static final long TRANSACTION_BACKOFF_MILLIS = 10;
+
+    Logger log = LoggerFactory.getLogger(JobOutbox.class);
+    private final JobOutboxRepository jobOutboxRepository;
+    private final TransactionTemplate mongoTransactionTemplate;
+    private final MongoTopology mongoTopology;
+    private final boolean enabled;
+
+    public JobOutbox(
+            JobOutboxRepository jobOutboxRepository,
+            TransactionTemplate mongoTransactionTemplate,
+            MongoTopology mongoTopology,
+            @Value("${resumejobservice.jobs.outbox.enabled:false}") boolean enabled
+    ) {
+        this.jobOutboxRepository = jobOutboxRepository;
+        this.mongoTransactionTemplate = mongoTransactionTemplate;
+        this.mongoTopology = mongoTopology;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void checkTopology() {
+        //a standalone server rejects every transaction, better to not start than to fail every write
+        if (enabled && !mongoTopology.isReplicated()) {
+            throw new IllegalStateException("resumejobservice.jobs.outbox.enabled needs a replica set or sharded cluster, "
+                    + "MONGO_URI points at a standalone server");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //the job write and its events commit or roll back together
+    public <T> T inTransaction(Supplier<T> write) {
+        if (!enabled) {
+            return write.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return mongoTransactionTemplate.execute(status -> write.get());
+            } catch (RuntimeException e) {
+                //writers for the same candidate take the same sequence, two at once is a write conflict
+                //that mongo labels as safe to retry
+                if (attempt >= TRANSACTION_ATTEMPTS || !isTransient(e) || !backOff(attempt)) {
+                    throw e;
+                }
+                log.debug("Retrying job outbox transaction |attempt: {}", attempt, e);
+            }
+        }
+    }
+
+    public void record(String type, Job job) {
+        record(type, List.of(job));
+    }
+
+    public void record(String type, List<Job> jobs) {
+        if (!enabled || jobs.isEmpty()) {
+            return;
+        }
+        var now = System.currentTimeMillis();
+        var byCandidate = jobs.stream().collect(Collectors.groupingBy(Job::candidateId, LinkedHashMap::new, Collectors.toList()));
+        var events = new ArrayList<JobOutboxEvent>();
+        byCandidate.forEach((candidateId, candidateJobs) -> {
+            var first = jobOutboxRepository.allocateSequence(candidateId, candidateJobs.size());
+            IntStream.range(0, candidateJobs.size())
+                    .mapToObj(i -> event(first + i, type, candidateJobs.get(i), now))
+                    .forEach(events::add);
+        });
+        jobOutboxRepository.insert(events);
+    }
+
+    //full jitter, writers that just collided would otherwise all come back at the same moment
+    private static boolean backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong((TRANSACTION_BACKOFF_MILLIS << (attempt - 1)) + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static JobOutboxEvent event(long sequence, String type, Job job, long now) {
+        return new JobOutboxEvent(null, sequence, type, job.id(), job.userId(), job.candidateId(), DELETED.equals(type) ? null : job, now, null);
+    }
+
+    private static boolean isTransient(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException
+                    && mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,156 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.repository.JobOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class JobOutboxRelay implements SmartLifecycle {
+
+    Logger log = LoggerFactory.getLogger(JobOutboxRelay.class);
+    private final JobOutboxRepository jobOutboxRepository;
+    private final JobOutboxSink jobOutboxSink;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration lease;
+    private final String owner;
+    private final Counter published;
+    private final Counter failures;
+    private final Timer lag;
+    private final Timer publishTime;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    public JobOutboxRelay(
+            JobOutboxRepository jobOutboxRepository,
+            JobOutboxSink jobOutboxSink,
+            MeterRegistry meterRegistry,
+            @Value("${resumejobservice.jobs.outbox.enabled:false}") boolean enabled,
+            @Value("${resumejobservice.jobs.outbox.batch-size:100}") int batchSize,
+            @Value("${resumejobservice.jobs.outbox.flush-interval:PT1S}") Duration flushInterval,
+            @Value("${resumejobservice.jobs.outbox.lease:PT30S}") Duration lease
+    ) {
+        this.jobOutboxRepository = jobOutboxRepository;
+        this.jobOutboxSink = jobOutboxSink;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.lease = lease;
+        this.owner = UUID.randomUUID().toString();
+        this.published = Counter.builder("jobs.outbox.events")
+                .tag("result", "published")
+                .register(meterRegistry);
+        this.failures = Counter.builder("jobs.outbox.events")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        //from the job write to the sink accepting the event
+        this.lag = Timer.builder("jobs.outbox.lag")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.publishTime = Timer.builder("jobs.outbox.publish")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "job-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::relay, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void relay() {
+        try {
+            //one relay across the replicas, that's what keeps a candidate's events in order
+            while (!Thread.currentThread().isInterrupted() && jobOutboxRepository.claimRelay(owner, lease)) {
+                var events = jobOutboxRepository.findPending(batchSize);
+                if (events.isEmpty()) {
+                    return;
+                }
+                if (!publish(events)) {
+                    return;
+                }
+                //a short batch means we're caught up, wait for the next flush
+                if (events.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            //nothing is marked, the same events go out again next flush
+            log.warn("Job outbox relay failed |owner: {}", owner, e);
+        }
+    }
+
+    //the lease is checked again before the sink and before marking, a relay that lost it to
+    //another replica stops instead of publishing out of order next to the new holder
+    private boolean publish(List<JobOutboxEvent> events) throws Exception {
+        if (!holdsLease()) {
+            return false;
+        }
+        var start = System.nanoTime();
+        try {
+            jobOutboxSink.publish(events);
+        } catch (Exception e) {
+            failures.increment(events.size());
+            throw e;
+        }
+        publishTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!holdsLease()) {
+            //left pending, the new holder sends these again
+            return false;
+        }
+        //a crash between the sink and this update sends the batch again, delivery is at least once
+        var now = Instant.now();
+        jobOutboxRepository.markPublished(events.stream().map(JobOutboxEvent::id).toList(), now);
+        published.increment(events.size());
+        for (JobOutboxEvent event : events) {
+            if (event.createdAt() != null) {
+                lag.record(Math.max(0L, now.toEpochMilli() - event.createdAt()), TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
+    private boolean holdsLease() {
+        if (jobOutboxRepository.claimRelay(owner, lease)) {
+            return true;
+        }
+        log.warn("Job outbox relay lost its lease |owner: {}", owner);
+        return false;
+    }
+}
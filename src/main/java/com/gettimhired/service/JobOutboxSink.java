@@ -0,0 +1,10 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+
+import java.util.List;
+
+public interface JobOutboxSink {
+    //events come oldest first, a throw means none of them count as delivered and the batch is sent again
+    void publish(List<JobOutboxEvent> events) throws Exception;
+}
@@ -2,35 +2,172 @@ package com.gettimhired.service;
 
 
 import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.CandidateJobsDTO;
+import com.gettimhired.model.dto.JobBulkItemDTO;
+import com.gettimhired.model.dto.JobBulkResultDTO;
 import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.dto.JobPageDTO;
+import com.gettimhired.model.dto.update.JobPatchDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
 import com.gettimhired.model.mongo.Job;
 import com.gettimhired.repository.JobRepository;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class JobService {
 
+    private static final String CURSOR_SEPARATOR = "|";
+
     Logger log = LoggerFactory.getLogger(JobService.class);
     private final JobRepository jobRepository;
-    private final RestClient resumeSiteRestClient;
+    private final JobCache jobCache;
+    private final JobCacheInvalidationBus jobCacheInvalidationBus;
+    private final JobOutbox jobOutbox;
+    private final int maxPageSize;
+    private final int maxBatchCandidates;
+    private final int maxBulkSize;
+    private final Validator validator;
 
-    public JobService(JobRepository jobRepository, RestClient resumeSiteRestClient) {
+    public JobService(
+            JobRepository jobRepository,
+            JobCache jobCache,
+            JobCacheInvalidationBus jobCacheInvalidationBus,
+            JobOutbox jobOutbox,
+            @Value("${resumejobservice.jobs.page.max-size:100}") int maxPageSize,
+            @Value("${resumejobservice.jobs.batch.max-candidates:50}") int maxBatchCandidates,
+            @Value("${resumejobservice.jobs.bulk.max-size:100}") int maxBulkSize,
+            Validator validator
+    ) {
         this.jobRepository = jobRepository;
-        this.resumeSiteRestClient = resumeSiteRestClient;
+        this.jobCache = jobCache;
+        this.jobCacheInvalidationBus = jobCacheInvalidationBus;
+        this.jobOutbox = jobOutbox;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchCandidates = maxBatchCandidates;
+        this.maxBulkSize = maxBulkSize;
+        this.validator = validator;
     }
 
     public List<JobDTO> findAllJobsForUserAndCandidateId(String userId, String candidateId) {
-        return jobRepository.findAllByUserIdAndCandidateId(userId, candidateId).stream()
+        return jobCache.getJobs(userId, candidateId, () ->
+                jobRepository.findAllByUserIdAndCandidateId(userId, candidateId).stream()
+                        .map(JobDTO::new)
+                        .toList()
+        );
+    }
+
+    public List<CandidateJobsDTO> findAllJobsForUserAndCandidateIds(String userId, List<String> candidateIds) {
+        var distinctIds = new LinkedHashSet<>(candidateIds);
+        if (distinctIds.isEmpty() || distinctIds.size() > maxBatchCandidates) {
+            throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+        }
+        //candidates already in the cache are served from it, the rest share one $in query
+        Map<String, List<JobDTO>> jobsByCandidate = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String candidateId : distinctIds) {
+            var cachedJobs = jobCache.getJobsIfPresent(userId, candidateId);
+            if (cachedJobs != null) {
+                jobsByCandidate.put(candidateId, cachedJobs);
+            } else {
+                misses.add(candidateId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            //read before the query, a write that lands in between keeps the snapshot out of the cache
+            var generation = jobCache.generation();
+            var loaded = jobRepository.findAllByUserIdAndCandidateIdIn(userId, misses).stream()
+                    .map(JobDTO::new)
+                    .collect(Collectors.groupingBy(JobDTO::candidateId));
+            for (String candidateId : misses) {
+                var jobs = loaded.getOrDefault(candidateId, List.<JobDTO>of());
+                jobCache.putIfUnchanged(userId, candidateId, jobs, generation);
+                jobsByCandidate.put(candidateId, jobs);
+            }
+        }
+        return distinctIds.stream()
+                .map(candidateId -> new CandidateJobsDTO(candidateId, jobsByCandidate.get(candidateId)))
+                .toList();
+    }
+
+    //backed by an open cursor, the caller has to close the stream
+    public Stream<JobDTO> streamAllJobsForUserAndCandidateId(String userId, String candidateId) {
+        return jobRepository.streamAllByUserIdAndCandidateId(userId, candidateId)
+                .map(JobDTO::new);
+    }
+
+    public List<JobDTO> findAllJobsForUserAndCandidateId(String userId, String candidateId, Collection<String> fields) {
+        //a cached full list is cheaper than any projection
+        var cachedJobs = jobCache.getJobsIfPresent(userId, candidateId);
+        if (cachedJobs != null) {
+            return cachedJobs;
+        }
+        return jobRepository.findAllByUserIdAndCandidateIdProjected(userId, candidateId, fields).stream()
+                .map(JobDTO::new)
+                .toList();
+    }
+
+    public JobPageDTO findJobPageForUserAndCandidateId(String userId, String candidateId, int size, String cursor) {
+        if (size < 1 || size > maxPageSize) {
+            throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+        }
+        //one extra row tells us if there is another page without a count query
+        var after = decodeCursor(cursor);
+        var jobs = jobRepository.findPageByUserIdAndCandidateId(userId, candidateId,
+                after == null ? null : after.startDate(), after == null ? null : after.id(), size + 1);
+        var hasNext = jobs.size() > size;
+        var page = jobs.stream()
+                .limit(size)
                 .map(JobDTO::new)
                 .toList();
+        var nextCursor = hasNext ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new JobPageDTO(page, nextCursor);
+    }
+
+    //the page sort key, startDate then id. A job without a startDate leaves the date part empty
+    public String encodeCursor(JobDTO job) {
+        var cursor = (job.startDate() == null ? "" : job.startDate().toString()) + CURSOR_SEPARATOR + job.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PageCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separator = decoded.indexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+            }
+            var startDate = separator == 0 ? null : LocalDate.parse(decoded.substring(0, separator));
+            return new PageCursor(startDate, decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+        }
     }
 
     public Optional<JobDTO> findJobByIdAndUserId(String id, String userId) {
@@ -38,120 +175,257 @@ public class JobService {
                 .map(JobDTO::new);
     }
 
+    //one $in query for the whole batch, ids the user doesn't own are simply missing from the map
+    public Map<String, JobDTO> findJobsByIdsAndUserId(Collection<String> ids, String userId, Collection<String> fields) {
+        return jobRepository.findAllByIdInAndUserIdProjected(ids, userId, fields).stream()
+                .map(JobDTO::new)
+                .collect(Collectors.toMap(JobDTO::id, Function.identity()));
+    }
+
     public Optional<JobDTO> createJob(String userId, String candidateId, JobDTO jobDto) {
         var job = new Job(userId, candidateId, jobDto);
         try {
-            var jobFromDb = jobRepository.save(job);
+            var jobFromDb = jobOutbox.inTransaction(() -> {
+                var saved = jobRepository.save(job);
+                jobOutbox.record(JobOutbox.CREATED, saved);
+                return saved;
+            });
             var jobFromDatabase = new JobDTO(jobFromDb);
             return Optional.of(jobFromDatabase);
         } catch (Exception e) {
             log.error("createJob userId={} candidateId={}", userId, candidateId, e);
             return Optional.empty();
+        } finally {
+            invalidate(userId, candidateId, job.id());
         }
     }
 
-    public Optional<JobDTO> updateJob(String id, String userId, String candidateId, JobUpdateDTO jobUpdateDTO) {
-        //get job from db
-        Optional<Job> jobOpt = jobRepository.findById(id);
-        if (jobOpt.isPresent()) {
-            //check if the username matches
-            if (jobOpt.get().userId().equals(userId)) {
-                //check the candidateId
-                if (jobOpt.get().candidateId().equals(candidateId)) {
-                    //then update the candidate values
-                    var jobToSave = new Job(
-                            jobOpt.get().id(),
-                            jobOpt.get().userId(),
-                            jobOpt.get().candidateId(),
-                            jobUpdateDTO.companyName(),
-                            jobUpdateDTO.title(),
-                            jobUpdateDTO.startDate(),
-                            jobUpdateDTO.endDate(),
-                            jobUpdateDTO.skills(),
-                            jobUpdateDTO.achievements(),
-                            jobUpdateDTO.currentlyWorking(),
-                            jobUpdateDTO.reasonForLeaving()
-                    );
-                    Job jobToReturn;
-                    try {
-                        jobToReturn = jobRepository.save(jobToSave);
-                    } catch (Exception e) {
-                        log.error("updateJob userId={} id={} candidateId={}", userId, id, candidateId, e);
-                        return Optional.empty();
-                    }
-                    var jobDto = new JobDTO(jobToReturn);
-                    return Optional.of(jobDto);
-                } else {
-                    throw new APIUpdateException(HttpStatus.FORBIDDEN);
-                }
+    public JobBulkResultDTO createJobs(String userId, String candidateId, List<JobDTO> jobDtos) {
+        if (jobDtos == null || jobDtos.isEmpty() || jobDtos.size() > maxBulkSize) {
+            throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+        }
+        //invalid items are reported and skipped, the rest go to mongo in one unordered bulk insert
+        var items = new JobBulkItemDTO[jobDtos.size()];
+        List<Integer> positions = new ArrayList<>();
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < jobDtos.size(); i++) {
+            var jobDto = jobDtos.get(i);
+            var violations = jobDto == null ? List.of("Job cannot be null") : validator.validate(jobDto).stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .toList();
+            if (violations.isEmpty()) {
+                positions.add(i);
+                jobs.add(new Job(userId, candidateId, jobDto));
             } else {
-                //userId does not match (403)
-                throw new APIUpdateException(HttpStatus.FORBIDDEN);
+                items[i] = new JobBulkItemDTO(i, false, null, violations);
+            }
+        }
+        if (!jobs.isEmpty()) {
+            Map<Integer, String> failures;
+            try {
+                failures = jobOutbox.isEnabled() ? insertAllWithOutbox(jobs) : jobRepository.insertAllUnordered(jobs);
+            } catch (Exception e) {
+                log.error("createJobs userId={} candidateId={}", userId, candidateId, e);
+                failures = new HashMap<>();
+                for (int i = 0; i < jobs.size(); i++) {
+                    failures.put(i, "Unable to save job");
+                }
+            } finally {
+                invalidate(userId, candidateId, null);
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                var index = positions.get(i);
+                var failure = failures.get(i);
+                items[index] = failure == null
+                        ? new JobBulkItemDTO(index, true, new JobDTO(jobs.get(i)), List.of())
+                        : new JobBulkItemDTO(index, false, null, List.of(failure));
             }
-        } else {
-            //CandidateId not found(404)
+        }
+        var created = (int) Arrays.stream(items).filter(JobBulkItemDTO::created).count();
+        return new JobBulkResultDTO(created, items.length - created, List.of(items));
+    }
+
+    //with the outbox on the bulk is all or nothing, the inserts and their events commit together.
+    //An error inside a transaction aborts it anyway, so one failed job rolls back the batch
+    private Map<Integer, String> insertAllWithOutbox(List<Job> jobs) {
+        try {
+            return jobOutbox.inTransaction(() -> {
+                var failed = jobRepository.insertAllUnordered(jobs);
+                if (!failed.isEmpty()) {
+                    throw new BulkInsertRolledBackException(failed);
+                }
+                jobOutbox.record(JobOutbox.CREATED, jobs);
+                return Map.<Integer, String>of();
+            });
+        } catch (BulkInsertRolledBackException e) {
+            var failures = new HashMap<Integer, String>();
+            for (int i = 0; i < jobs.size(); i++) {
+                failures.put(i, e.failures.getOrDefault(i, "Not saved, another job in the batch failed"));
+            }
+            return failures;
+        }
+    }
+
+    public Optional<JobDTO> updateJob(String id, String userId, String candidateId, JobUpdateDTO jobUpdateDTO) {
+        return updateJob(id, userId, candidateId, jobUpdateDTO, jobUpdateDTO.version());
+    }
+
+    public Optional<JobDTO> updateJob(String id, String userId, String candidateId, JobUpdateDTO jobUpdateDTO, Long expectedVersion) {
+        var update = new Update()
+                .set("companyName", jobUpdateDTO.companyName())
+                .set("title", jobUpdateDTO.title())
+                .set("startDate", jobUpdateDTO.startDate())
+                .set("endDate", jobUpdateDTO.endDate())
+                .set("skills", Objects.requireNonNullElse(jobUpdateDTO.skills(), List.of()))
+                .set("achievements", Objects.requireNonNullElse(jobUpdateDTO.achievements(), List.of()))
+                .set("currentlyWorking", jobUpdateDTO.currentlyWorking())
+                .set("reasonForLeaving", jobUpdateDTO.reasonForLeaving());
+        return applyUpdate(id, userId, candidateId, expectedVersion, update);
+    }
+
+    public Optional<JobDTO> patchJob(String id, String userId, String candidateId, JobPatchDTO jobPatchDTO, Long expectedVersion) {
+        //mongo rejects two operators on the same path, and clearing and setting endDate contradict each other
+        if (hasValues(jobPatchDTO.addSkills()) && hasValues(jobPatchDTO.removeSkills())
+                || hasValues(jobPatchDTO.addAchievements()) && hasValues(jobPatchDTO.removeAchievements())
+                || Boolean.TRUE.equals(jobPatchDTO.clearEndDate()) && jobPatchDTO.endDate() != null) {
+            throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+        }
+        var update = new Update();
+        setIfPresent(update, "companyName", jobPatchDTO.companyName());
+        setIfPresent(update, "title", jobPatchDTO.title());
+        setIfPresent(update, "startDate", jobPatchDTO.startDate());
+        setIfPresent(update, "endDate", jobPatchDTO.endDate());
+        if (Boolean.TRUE.equals(jobPatchDTO.clearEndDate())) {
+            update.set("endDate", null);
+        }
+        setIfPresent(update, "currentlyWorking", jobPatchDTO.currentlyWorking());
+        setIfPresent(update, "reasonForLeaving", jobPatchDTO.reasonForLeaving());
+        if (hasValues(jobPatchDTO.addSkills())) {
+            update.push("skills").each(jobPatchDTO.addSkills().toArray());
+        }
+        if (hasValues(jobPatchDTO.removeSkills())) {
+            update.pullAll("skills", jobPatchDTO.removeSkills().toArray());
+        }
+        if (hasValues(jobPatchDTO.addAchievements())) {
+            update.push("achievements").each(jobPatchDTO.addAchievements().toArray());
+        }
+        if (hasValues(jobPatchDTO.removeAchievements())) {
+            update.pullAll("achievements", jobPatchDTO.removeAchievements().toArray());
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            //nothing to change
+            throw new APIUpdateException(HttpStatus.BAD_REQUEST);
+        }
+        return applyUpdate(id, userId, candidateId, expectedVersion, update);
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+
+    private static boolean hasValues(List<String> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    private Optional<JobDTO> applyUpdate(String id, String userId, String candidateId, Long expectedVersion, Update update) {
+        Optional<Job> jobOpt;
+        try {
+            jobOpt = jobOutbox.inTransaction(() -> {
+                var updated = jobRepository.updateByIdAndUserIdAndCandidateId(id, userId, candidateId, expectedVersion, update);
+                updated.ifPresent(job -> jobOutbox.record(JobOutbox.UPDATED, job));
+                return updated;
+            });
+        } catch (Exception e) {
+            log.error("updateJob userId={} id={} candidateId={}", userId, id, candidateId, e);
+            return Optional.empty();
+        } finally {
+            invalidate(userId, candidateId, id);
+        }
+        if (jobOpt.isPresent()) {
+            return jobOpt.map(JobDTO::new);
+        }
+        //nothing matched, only now read the job to explain why
+        var existing = jobRepository.findById(id);
+        if (existing.isEmpty()) {
+            //Job not found(404)
             throw new APIUpdateException(HttpStatus.NOT_FOUND);
         }
+        if (!existing.get().userId().equals(userId) || !existing.get().candidateId().equals(candidateId)) {
+            //userId or candidateId does not match (403)
+            throw new APIUpdateException(HttpStatus.FORBIDDEN);
+        }
+        //someone else wrote the job after the client read it (409)
+        throw new APIUpdateException(HttpStatus.CONFLICT);
     }
 
     public boolean deleteJob(String id, String userId) {
         try {
-            jobRepository.deleteByIdAndUserId(id, userId);
+            jobOutbox.inTransaction(() -> {
+                //read first, the event needs the candidate and the delete doesn't return it
+                var existing = jobRepository.findJobByIdAndUserId(id, userId);
+                jobRepository.deleteByIdAndUserId(id, userId);
+                existing.ifPresent(job -> jobOutbox.record(JobOutbox.DELETED, job));
+                return null;
+            });
             return true;
         } catch (Exception e) {
             log.error("deleteJob userId={} id={}", userId, id, e);
             return false;
+        } finally {
+            //the candidate isn't known here, drop everything the user could have cached
+            jobCache.invalidateUser(userId);
+            jobCacheInvalidationBus.publish(userId, null, id);
         }
     }
 
     public boolean deleteAllJobsForCandidateIdAndUserId(String candidateId, String userId) {
         try {
-            jobRepository.deleteByCandidateIdAndUserId(candidateId, userId);
+            jobOutbox.inTransaction(() -> {
+                //the delete event only carries the keys, no need to read whole documents
+                var existing = jobRepository.findAllByUserIdAndCandidateIdProjected(userId, candidateId, List.of("userId", "candidateId"));
+                jobRepository.deleteByCandidateIdAndUserId(candidateId, userId);
+                jobOutbox.record(JobOutbox.DELETED, existing);
+                return null;
+            });
             return true;
         } catch (Exception e) {
             log.error("deleteAllJobsForCandidateIdAndUserId userId={} candidateId={}", userId, candidateId, e);
             return false;
+        } finally {
+            invalidate(userId, candidateId, null);
         }
     }
 
-    public List<JobDTO> findAllJobsByCandidateId(String candidateId) {
-        return jobRepository.findAllByCandidateId(candidateId)
-                .stream().sorted((j1, j2) -> {
-                    if (j1.endDate() == null && j2.endDate() == null) {
-                        return 0;
-                    }
-                    if (j1.endDate() == null) {
-                        return -1;
-                    }
-                    if (j2.endDate() == null) {
-                        return 1;
-                    }
-                    return j2.endDate().compareTo(j1.endDate());
-                }).toList();
-    }
-
-    public void migrateJobs() {
-        var jobDtos = resumeSiteRestClient.get()
-                .uri("/api/candidates/all/jobs/migrate")
-                .retrieve()
-                .body(JobDTO[].class);
-
-        if (jobDtos != null) {
-            for (JobDTO jobDto : jobDtos) {
-                jobRepository.save(new Job(
-                        jobDto.id(),
-                        jobDto.userId(),
-                        jobDto.candidateId(),
-                        jobDto.companyName(),
-                        jobDto.title(),
-                        jobDto.startDate(),
-                        jobDto.endDate(),
-                        jobDto.skills(),
-                        jobDto.achievements(),
-                        jobDto.currentlyWorking(),
-                        jobDto.reasonForLeaving()
-                ));
-            }
+    private void invalidate(String userId, String candidateId, String jobId) {
+        jobCache.invalidate(userId, candidateId);
+        //other replicas evict when this comes off the invalidation bus
+        jobCacheInvalidationBus.publish(userId, candidateId, jobId);
+    }
+
+    //backed by open cursors, the caller has to close the stream
+    public Stream<JobDTO> findAllJobsByCandidateId(String candidateId) {
+        //mongo sorts missing values last on a descending sort, so current jobs (no end date)
+        //come from their own query, both halves read in order off the candidateId/endDate index.
+        //flatMap opens the second cursor only once the first is drained and closes each one
+        Stream<Supplier<Stream<JobDTO>>> halves = Stream.of(
+                () -> jobRepository.streamAllByCandidateIdAndEndDateIsNull(candidateId),
+                () -> jobRepository.streamAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc(candidateId)
+        );
+        return halves.flatMap(Supplier::get);
+    }
+
+    private record PageCursor(LocalDate startDate, String id) {
+    }
+
+    private static class BulkInsertRolledBackException extends RuntimeException {
+        private final Map<Integer, String> failures;
+
+        private BulkInsertRolledBackException(Map<Integer, String> failures) {
+            super("Bulk insert rolled back", null, false, false);
+            this.failures = failures;
         }
     }
 }
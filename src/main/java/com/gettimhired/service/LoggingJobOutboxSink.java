@@ -0,0 +1,19 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+public class LoggingJobOutboxSink implements JobOutboxSink {
+
+    Logger log = LoggerFactory.getLogger(LoggingJobOutboxSink.class);
+
+    @Override
+    public void publish(List<JobOutboxEvent> events) {
+        for (JobOutboxEvent event : events) {
+            log.info("Job change event type={} jobId={} userId={} candidateId={}", event.type(), event.jobId(), event.userId(), event.candidateId());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.dto.TokenDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+@Service
+public class TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+
+    Logger log = LoggerFactory.getLogger(TokenService.class);
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    public TokenService(
+            @Value("${resumejobservice.auth.token.secret:}") String secret,
+            @Value("${resumejobservice.auth.token.allow-random-secret:false}") boolean allowRandomSecret,
+            @Value("${resumejobservice.auth.token.ttl:PT1H}") Duration ttl
+    ) {
+        if (secret == null || secret.isBlank()) {
+            if (!allowRandomSecret) {
+                throw new IllegalStateException("resumejobservice.auth.token.secret is not configured, "
+                        + "set resumejobservice.auth.token.allow-random-secret=true to use a random key in development");
+            }
+            //tokens still work, but only on this instance and only until it restarts
+            log.warn("No resumejobservice.auth.token.secret configured, using a random signing key");
+            var random = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(random);
+            this.key = new SecretKeySpec(random, ALGORITHM);
+        } else {
+            var secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+            //HmacSHA256 wants a key at least as long as its output
+            if (secretBytes.length < MIN_SECRET_BYTES) {
+                throw new IllegalStateException("resumejobservice.auth.token.secret must be at least " + MIN_SECRET_BYTES + " bytes");
+            }
+            this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        }
+        this.ttl = ttl;
+    }
+
+    public TokenDTO issueToken(String userId) {
+        var expiresAt = System.currentTimeMillis() / 1000 + ttl.toSeconds();
+        var payload = Base64.getUrlEncoder().withoutPadding().encodeToString(userId.getBytes(StandardCharsets.UTF_8))
+                + "." + expiresAt;
+        var signature = Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+        return new TokenDTO(payload + "." + signature, expiresAt);
+    }
+
+    public Optional<String> verifyToken(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        var lastDot = token.lastIndexOf('.');
+        var firstDot = token.indexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot) {
+            return Optional.empty();
+        }
+
+        try {
+            var payload = token.substring(0, lastDot);
+            var signature = Base64.getUrlDecoder().decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+            var expiresAt = Long.parseLong(payload.substring(firstDot + 1));
+            if (expiresAt <= System.currentTimeMillis() / 1000) {
+                return Optional.empty();
+            }
+            var userId = new String(Base64.getUrlDecoder().decode(payload.substring(0, firstDot)), StandardCharsets.UTF_8);
+            return Optional.of(userId);
+        } catch (IllegalArgumentException e) {
+            //covers bad base64 and a non numeric expiry
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign token", e);
+        }
+    }
+}
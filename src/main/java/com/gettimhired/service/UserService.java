@@ -1,26 +1,118 @@
 package com.gettimhired.service;
 
 import com.gettimhired.config.RequestContextHolder;
+import com.gettimhired.error.UserServiceUnavailableException;
 import com.gettimhired.model.dto.UserDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientResponseException;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class UserService {
 
     Logger log = LoggerFactory.getLogger(UserService.class);
     private final RestClient userServiceRestClient;
+    private final ConcurrentHashMap<LookupKey, CompletableFuture<Optional<UserDTO>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedLookups;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final Duration bulkheadMaxWait;
+    private final MeterRegistry meterRegistry;
 
-    public UserService(RestClient userServiceRestClient) {
+    public UserService(
+            RestClient userServiceRestClient,
+            MeterRegistry meterRegistry,
+            @Value("${resumejobservice.userservice.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${resumejobservice.userservice.circuit-breaker.open-duration:PT10S}") Duration openDuration,
+            @Value("${resumejobservice.userservice.circuit-breaker.half-open-probes:1}") int halfOpenProbes,
+            @Value("${resumejobservice.userservice.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${resumejobservice.userservice.bulkhead.max-wait:PT0.1S}") Duration bulkheadMaxWait
+    ) {
         this.userServiceRestClient = userServiceRestClient;
+        this.meterRegistry = meterRegistry;
+        this.coalescedLookups = Counter.builder("userservice.lookups.coalesced")
+                .description("user lookups that joined an in flight call instead of calling the user service")
+                .register(meterRegistry);
+        this.circuitBreaker = new CircuitBreaker("userservice", failureThreshold, openDuration, halfOpenProbes, meterRegistry);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadMaxWait = bulkheadMaxWait;
+        meterRegistry.gauge("userservice.bulkhead.available", bulkhead, Semaphore::availablePermits);
     }
 
     public Optional<UserDTO> findUserById(String id) {
+        //callers with the same id and credentials share one remote call
+        var key = new LookupKey(id, RequestContextHolder.getHeader());
+        var call = new CompletableFuture<Optional<UserDTO>>();
+        var existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            coalescedLookups.increment();
+            return join(existingCall);
+        }
+
+        try {
+            var result = fetchUserById(id);
+            call.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private Optional<UserDTO> fetchUserById(String id) {
+        //fail fast instead of parking request threads on a dependency that is down
+        if (!circuitBreaker.tryAcquirePermission()) {
+            meterRegistry.counter("userservice.calls.rejected", "reason", "circuit-open").increment();
+            throw new UserServiceUnavailableException("User service circuit breaker is open");
+        }
+        if (!acquireBulkhead()) {
+            circuitBreaker.releasePermission();
+            meterRegistry.counter("userservice.calls.rejected", "reason", "bulkhead-full").increment();
+            throw new UserServiceUnavailableException("User service bulkhead is full");
+        }
+
+        try {
+            var result = callUserService(id);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (HttpServerErrorException | ResourceAccessException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.releasePermission();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadMaxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Optional<UserDTO> callUserService(String id) {
         try {
             var result = userServiceRestClient
                     .get()
@@ -29,9 +121,31 @@ public class UserService {
                     .retrieve()
                     .toEntity(UserDTO.class);
             return Optional.ofNullable(result.getBody());
+        } catch (HttpServerErrorException e) {
+            //the user service is failing, not the user, let callers keep what they already know
+            log.error("GET findUserById id={} httpStatus={}", id, e.getStatusCode(), e);
+            throw e;
         } catch (RestClientResponseException e) {
             log.error("GET findUserById id={} httpStatus={}", id, e.getStatusCode(), e);
             return Optional.empty();
         }
     }
+
+    private static Optional<UserDTO> join(CompletableFuture<Optional<UserDTO>> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record LookupKey(String id, String authorization) {
+        @Override
+        public String toString() {
+            return "LookupKey[id=" + id + "]";
+        }
+    }
 }
@@ -3,7 +3,7 @@ package com.gettimhired;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "resumejobservice.auth.token.allow-random-secret=true")
 class JobsServiceApplicationTests {
 
 	@Test
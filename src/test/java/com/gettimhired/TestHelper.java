@@ -4,4 +4,5 @@ public class TestHelper {
     public static String ID = "BARK_ID";
     public static String USER_ID = "BARK_USER_ID";
     public static String CANDIDATE_ID = "BARK_C_ID";
+    public static String TOKEN_SECRET = "BARK_SECRET_BARK_SECRET_BARK_SECRET";
 }
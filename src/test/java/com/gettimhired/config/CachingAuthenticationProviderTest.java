@@ -0,0 +1,132 @@
+package com.gettimhired.config;
+
+import com.gettimhired.model.dto.CustomUserDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingAuthenticationProviderTest {
+
+    private static final int AUTHENTICATIONS = 50;
+
+    Logger log = LoggerFactory.getLogger(CachingAuthenticationProviderTest.class);
+
+    private CachingAuthenticationProvider provider;
+    private CustomUserDetailsService customUserDetailsService;
+    private PasswordEncoder passwordEncoder;
+    private VerifiedCredentialCache verifiedCredentialCache;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        customUserDetailsService = mock(CustomUserDetailsService.class);
+        passwordEncoder = mock(PasswordEncoder.class);
+        meterRegistry = new SimpleMeterRegistry();
+        verifiedCredentialCache = new VerifiedCredentialCache(100, Duration.ofMinutes(5), meterRegistry);
+        provider = new CachingAuthenticationProvider(customUserDetailsService, passwordEncoder, verifiedCredentialCache);
+        when(customUserDetailsService.loadUserByUsername("BARK"))
+                .thenReturn(new CustomUserDetails("BARK", "BARK_HASH", List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        when(passwordEncoder.matches("BARK_PASSWORD", "BARK_HASH")).thenReturn(true);
+    }
+
+    @Test
+    public void testSecondAuthenticationSkipsPasswordEncoder() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD"));
+        var result = provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD"));
+
+        assertTrue(result.isAuthenticated());
+        verify(passwordEncoder, times(1)).matches("BARK_PASSWORD", "BARK_HASH");
+        assertEquals(1.0, meterRegistry.counter("auth.credential.cache", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("auth.credential.cache", "result", "miss").count());
+    }
+
+    @Test
+    public void testWrongPasswordIsNotServedFromCache() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD"));
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "WRONG")));
+
+        verify(passwordEncoder, times(1)).matches("WRONG", "BARK_HASH");
+    }
+
+    @Test
+    public void testFailedAuthenticationIsNotCached() {
+        when(passwordEncoder.matches("BARK_PASSWORD", "BARK_HASH")).thenReturn(false);
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD")));
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD")));
+
+        verify(passwordEncoder, times(2)).matches("BARK_PASSWORD", "BARK_HASH");
+    }
+
+    @Test
+    public void testChangedPasswordHashMissesCache() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD"));
+        when(customUserDetailsService.loadUserByUsername("BARK"))
+                .thenReturn(new CustomUserDetails("BARK", "NEW_HASH", List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD")));
+
+        verify(passwordEncoder, times(1)).matches("BARK_PASSWORD", "NEW_HASH");
+    }
+
+    @Test
+    public void testRevokeForcesPasswordEncoder() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD"));
+        verifiedCredentialCache.revoke("BARK");
+        provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD"));
+
+        verify(passwordEncoder, times(2)).matches("BARK_PASSWORD", "BARK_HASH");
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    public void testCacheRaisesAuthenticationsPerSecond() {
+        //the app's encoder at its default strength, that cost is what the cache saves
+        var bcrypt = new BCryptPasswordEncoder();
+        var hash = bcrypt.encode("BARK_PASSWORD");
+        when(customUserDetailsService.loadUserByUsername("BARK"))
+                .thenReturn(new CustomUserDetails("BARK", hash, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        var uncached = new DaoAuthenticationProvider(bcrypt);
+        uncached.setUserDetailsService(customUserDetailsService);
+        var cached = new CachingAuthenticationProvider(customUserDetailsService, bcrypt, verifiedCredentialCache);
+        //warm up both paths, the first call also fills the verified credential cache
+        authenticationsPerSecond(uncached, 5);
+        authenticationsPerSecond(cached, 5);
+
+        var uncachedRate = authenticationsPerSecond(uncached, AUTHENTICATIONS);
+        var cachedRate = authenticationsPerSecond(cached, AUTHENTICATIONS);
+        log.info("uncached authentications/s={} cached authentications/s={}", uncachedRate, cachedRate);
+
+        assertTrue(cachedRate > uncachedRate * 10);
+    }
+
+    private static long authenticationsPerSecond(DaoAuthenticationProvider provider, int authentications) {
+        var start = System.nanoTime();
+        for (int i = 0; i < authentications; i++) {
+            assertTrue(provider.authenticate(new UsernamePasswordAuthenticationToken("BARK", "BARK_PASSWORD")).isAuthenticated());
+        }
+        return authentications * TimeUnit.SECONDS.toNanos(1) / Math.max(1, System.nanoTime() - start);
+    }
+}
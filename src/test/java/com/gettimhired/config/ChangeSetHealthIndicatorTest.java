@@ -0,0 +1,59 @@
+package com.gettimhired.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.List;
+
+import static com.gettimhired.config.MongoSchemaManager.ChangeSetState.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChangeSetHealthIndicatorTest {
+
+    private ChangeSetHealthIndicator healthIndicator;
+    private MongoSchemaManager mongoSchemaManager;
+
+    @BeforeEach
+    public void init() {
+        mongoSchemaManager = mock(MongoSchemaManager.class);
+        healthIndicator = new ChangeSetHealthIndicator(mongoSchemaManager);
+    }
+
+    @Test
+    public void testMigratingWhileRequiredChangeSetRuns() {
+        when(mongoSchemaManager.statuses()).thenReturn(List.of(
+                new MongoSchemaManager.ChangeSetStatus("changeset-001", true, COMPLETED),
+                new MongoSchemaManager.ChangeSetStatus("changeset-002", true, RUNNING)
+        ));
+
+        var health = healthIndicator.health();
+
+        assertEquals(ChangeSetHealthIndicator.MIGRATING, health.getStatus());
+        assertEquals("RUNNING", health.getDetails().get("changeset-002"));
+    }
+
+    @Test
+    public void testUpWhileNonBlockingChangeSetRuns() {
+        when(mongoSchemaManager.statuses()).thenReturn(List.of(
+                new MongoSchemaManager.ChangeSetStatus("changeset-001", true, COMPLETED),
+                new MongoSchemaManager.ChangeSetStatus("changeset-004", false, RUNNING)
+        ));
+
+        var health = healthIndicator.health();
+
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("RUNNING (non-blocking)", health.getDetails().get("changeset-004"));
+    }
+
+    @Test
+    public void testDownWhenRequiredChangeSetFails() {
+        when(mongoSchemaManager.statuses()).thenReturn(List.of(
+                new MongoSchemaManager.ChangeSetStatus("changeset-001", true, FAILED),
+                new MongoSchemaManager.ChangeSetStatus("changeset-002", true, PENDING)
+        ));
+
+        assertEquals(Status.DOWN, healthIndicator.health().getStatus());
+    }
+}
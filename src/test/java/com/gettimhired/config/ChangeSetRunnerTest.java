@@ -0,0 +1,236 @@
+package com.gettimhired.config;
+
+import com.gettimhired.model.mongo.ChangeSet;
+import com.gettimhired.repository.ChangeSetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ChangeSetRunnerTest {
+
+    private static final Duration LEASE = Duration.ofMillis(300);
+
+    private ChangeSetRepository changeSetRepository;
+    //stands in for the change set collection, every call is atomic like a single mongo operation
+    private final Map<String, ChangeSet> store = new HashMap<>();
+
+    @BeforeEach
+    public void init() {
+        changeSetRepository = mock(ChangeSetRepository.class);
+        when(changeSetRepository.claim(anyString(), anyString(), anyString(), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            synchronized (store) {
+                String id = invocation.getArgument(0);
+                String owner = invocation.getArgument(3);
+                Duration lease = invocation.getArgument(4);
+                var now = System.currentTimeMillis();
+                var changeSet = store.get(id);
+                if (changeSet == null) {
+                    changeSet = new ChangeSet();
+                    changeSet.setId(id);
+                    store.put(id, changeSet);
+                } else if (changeSet.isCompleted() || (changeSet.getLockExpiresAt() != null && changeSet.getLockExpiresAt() >= now)) {
+                    return Optional.empty();
+                }
+                changeSet.setLockOwner(owner);
+                changeSet.setLockExpiresAt(now + lease.toMillis());
+                changeSet.setInProgress(true);
+                return Optional.of(changeSet);
+            }
+        });
+        when(changeSetRepository.renew(anyString(), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            synchronized (store) {
+                var changeSet = store.get((String) invocation.getArgument(0));
+                if (changeSet == null || !invocation.getArgument(1).equals(changeSet.getLockOwner())) {
+                    return false;
+                }
+                changeSet.setLockExpiresAt(System.currentTimeMillis() + ((Duration) invocation.getArgument(2)).toMillis());
+                return true;
+            }
+        });
+        when(changeSetRepository.complete(anyString(), anyString())).thenAnswer(invocation -> {
+            synchronized (store) {
+                var changeSet = store.get((String) invocation.getArgument(0));
+                if (changeSet == null || !invocation.getArgument(1).equals(changeSet.getLockOwner())) {
+                    return false;
+                }
+                changeSet.setCompleted(true);
+                changeSet.setInProgress(false);
+                changeSet.setLockOwner(null);
+                changeSet.setLockExpiresAt(null);
+                return true;
+            }
+        });
+        doAnswer(invocation -> {
+            synchronized (store) {
+                var changeSet = store.get((String) invocation.getArgument(0));
+                if (changeSet != null && invocation.getArgument(1).equals(changeSet.getLockOwner())) {
+                    changeSet.setInProgress(false);
+                    changeSet.setLockOwner(null);
+                    changeSet.setLockExpiresAt(null);
+                }
+                return null;
+            }
+        }).when(changeSetRepository).release(anyString(), anyString(), any());
+        when(changeSetRepository.findById(anyString())).thenAnswer(invocation -> {
+            synchronized (store) {
+                return Optional.ofNullable(store.get((String) invocation.getArgument(0)));
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentStartersRunChangeSetOnce() throws Exception {
+        var starters = 8;
+        var runs = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(starters);
+        try {
+            var results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < starters; i++) {
+                var runner = runner();
+                results.add(executor.submit((Callable<Boolean>) () -> {
+                    start.await();
+                    return runner.run("changeset-004", "tim.schimandle", "migrate", () -> {
+                        runs.incrementAndGet();
+                        sleep(100);
+                    });
+                }));
+            }
+            start.countDown();
+
+            var ran = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    ran++;
+                }
+            }
+            assertEquals(1, runs.get());
+            assertEquals(1, ran);
+            assertTrue(store.get("changeset-004").isCompleted());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHeartbeatKeepsLeaseForLongChangeSet() throws Exception {
+        var runs = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var first = runner();
+            var second = runner();
+            //the change outlives several leases, the heartbeat has to keep the second starter out
+            var holder = executor.submit(() -> first.run("changeset-004", "tim.schimandle", "migrate", () -> {
+                runs.incrementAndGet();
+                sleep(LEASE.toMillis() * 4);
+            }));
+            sleep(50);
+            var waiter = executor.submit(() -> second.run("changeset-004", "tim.schimandle", "migrate", runs::incrementAndGet));
+
+            assertTrue(holder.get(10, TimeUnit.SECONDS));
+            assertFalse(waiter.get(10, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLostLeaseStopsChangeSetWithoutCompletingIt() {
+        var observed = new AtomicInteger();
+
+        assertThrows(CancellationException.class, () -> runner().run("changeset-004", "tim.schimandle", "migrate", leaseLost -> {
+            //another node takes the change set over, the next heartbeat notices
+            synchronized (store) {
+                store.get("changeset-004").setLockOwner("OTHER_NODE");
+            }
+            var deadline = System.currentTimeMillis() + 5_000;
+            while (!leaseLost.getAsBoolean() && System.currentTimeMillis() < deadline) {
+                sleep(10);
+            }
+            if (leaseLost.getAsBoolean()) {
+                observed.incrementAndGet();
+            }
+        }));
+
+        assertEquals(1, observed.get());
+        var changeSet = store.get("changeset-004");
+        assertFalse(changeSet.isCompleted());
+        assertEquals("OTHER_NODE", changeSet.getLockOwner());
+        verify(changeSetRepository, never()).complete(anyString(), anyString());
+    }
+
+    @Test
+    public void testExpiredLeaseFromCrashedHolderIsRecovered() throws Exception {
+        var crashed = new ChangeSet();
+        crashed.setId("changeset-004");
+        crashed.setLockOwner("DEAD_NODE");
+        crashed.setLockExpiresAt(System.currentTimeMillis() + LEASE.toMillis());
+        store.put("changeset-004", crashed);
+        var runs = new AtomicInteger();
+
+        var ran = runner().run("changeset-004", "tim.schimandle", "migrate", runs::incrementAndGet);
+
+        assertTrue(ran);
+        assertEquals(1, runs.get());
+        assertTrue(store.get("changeset-004").isCompleted());
+    }
+
+    @Test
+    public void testFailedChangeSetReleasesLease() throws Exception {
+        var runs = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> runner().run("changeset-004", "tim.schimandle", "migrate", () -> {
+            throw new IllegalStateException("resume-site is down");
+        }));
+        var changeSet = store.get("changeset-004");
+        assertFalse(changeSet.isCompleted());
+        assertNull(changeSet.getLockOwner());
+
+        //the next starter doesn't have to wait out the lease
+        assertTrue(runner().run("changeset-004", "tim.schimandle", "migrate", runs::incrementAndGet));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testCompletedChangeSetIsSkipped() throws Exception {
+        var done = new ChangeSet();
+        done.setId("changeset-001");
+        done.setCompleted(true);
+        store.put("changeset-001", done);
+        var runs = new AtomicInteger();
+
+        assertFalse(runner().run("changeset-001", "tim.schimandle", "index", runs::incrementAndGet));
+        assertEquals(0, runs.get());
+    }
+
+    private ChangeSetRunner runner() {
+        return new ChangeSetRunner(changeSetRepository, LEASE, Duration.ofMillis(100), Duration.ofMillis(20));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,26 +1,51 @@
 package com.gettimhired.config;
 
 import com.gettimhired.TestHelper;
+import com.gettimhired.error.UserServiceUnavailableException;
 import com.gettimhired.model.dto.UserDTO;
 import com.gettimhired.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.client.HttpServerErrorException;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 class CustomUserDetailsServiceTestDTO {
 
     private CustomUserDetailsService customUserDetailsService;
     private UserService userService;
+    private AtomicLong nanos;
+    private VerifiedCredentialCache verifiedCredentialCache;
 
     @BeforeEach
     public void init() {
         userService = Mockito.mock(UserService.class);
-        customUserDetailsService = new CustomUserDetailsService(userService);
+        nanos = new AtomicLong();
+        verifiedCredentialCache = Mockito.mock(VerifiedCredentialCache.class);
+        customUserDetailsService = new CustomUserDetailsService(
+                userService,
+                100,
+                Duration.ofMinutes(1),
+                Duration.ofMinutes(5),
+                Duration.ofSeconds(10),
+                new SimpleMeterRegistry(),
+                verifiedCredentialCache,
+                nanos::get,
+                Runnable::run,
+                Runnable::run
+        );
     }
 
     @Test
@@ -37,6 +62,17 @@ class CustomUserDetailsServiceTestDTO {
         Assertions.assertEquals(1, userDetails.getAuthorities().size());
     }
 
+    @Test
+    public void testUserDetailsServiceMapsUserServiceRoles() {
+        var userOpt = Optional.of(new UserDTO(TestHelper.ID, "BARK_PASSWORD", "email", "password", List.of("admin", "ROLE_USER")));
+        Mockito.when(userService.findUserById("BARK")).thenReturn(userOpt);
+
+        var userDetails = customUserDetailsService.loadUserByUsername("BARK");
+
+        var authorities = userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        Assertions.assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"), authorities);
+    }
+
     @Test
     public void testUserDetailsServiceUserNotFound() {
         Optional<UserDTO> userOpt = Optional.empty();
@@ -47,4 +83,138 @@ class CustomUserDetailsServiceTestDTO {
         Mockito.verify(userService, Mockito.times(1)).findUserById("BARK");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testUserDetailsServiceUserGoneRevokesVerifiedCredential() {
+        Mockito.when(userService.findUserById("BARK"))
+                .thenReturn(Optional.of(getUser("BARK_PASSWORD")))
+                .thenReturn(Optional.empty());
+
+        customUserDetailsService.loadUserByUsername("BARK");
+        Mockito.verify(verifiedCredentialCache, Mockito.never()).revoke("BARK");
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("BARK"));
+        Mockito.verify(verifiedCredentialCache, Mockito.times(1)).revoke("BARK");
+    }
+
+    @Test
+    public void testUserDetailsServiceCachesUser() {
+        Mockito.when(userService.findUserById("BARK")).thenReturn(Optional.of(getUser("BARK_PASSWORD")));
+
+        customUserDetailsService.loadUserByUsername("BARK");
+        var userDetails = customUserDetailsService.loadUserByUsername("BARK");
+
+        Mockito.verify(userService, Mockito.times(1)).findUserById("BARK");
+        Assertions.assertEquals("BARK_PASSWORD", userDetails.getPassword());
+    }
+
+    @Test
+    public void testUserDetailsServiceCachesUserNotFoundUntilNegativeTtl() {
+        Mockito.when(userService.findUserById("BARK")).thenReturn(Optional.empty());
+
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("BARK"));
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("BARK"));
+        Mockito.verify(userService, Mockito.times(1)).findUserById("BARK");
+
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("BARK"));
+        Mockito.verify(userService, Mockito.times(2)).findUserById("BARK");
+    }
+
+    @Test
+    public void testUserDetailsServiceRefreshesAfterTtl() {
+        Mockito.when(userService.findUserById("BARK"))
+                .thenReturn(Optional.of(getUser("BARK_PASSWORD")))
+                .thenReturn(Optional.of(getUser("NEW_PASSWORD")));
+
+        customUserDetailsService.loadUserByUsername("BARK");
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        customUserDetailsService.loadUserByUsername("BARK");
+        var refreshed = customUserDetailsService.loadUserByUsername("BARK");
+
+        Mockito.verify(userService, Mockito.times(2)).findUserById("BARK");
+        Assertions.assertEquals("NEW_PASSWORD", refreshed.getPassword());
+    }
+
+    @Test
+    public void testUserDetailsServiceServesStaleWhileUserServiceIsDown() {
+        Mockito.when(userService.findUserById("BARK"))
+                .thenReturn(Optional.of(getUser("BARK_PASSWORD")))
+                .thenThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "down", null, null, null));
+
+        customUserDetailsService.loadUserByUsername("BARK");
+        nanos.addAndGet(Duration.ofMinutes(3).toNanos());
+        customUserDetailsService.loadUserByUsername("BARK");
+        var userDetails = customUserDetailsService.loadUserByUsername("BARK");
+
+        Assertions.assertEquals("BARK_PASSWORD", userDetails.getPassword());
+
+        nanos.addAndGet(Duration.ofMinutes(4).toNanos());
+        Assertions.assertThrows(HttpServerErrorException.class, () -> customUserDetailsService.loadUserByUsername("BARK"));
+    }
+
+    @Test
+    public void testUserDetailsServiceServesStaleWhileCircuitIsOpen() {
+        Mockito.when(userService.findUserById("BARK"))
+                .thenReturn(Optional.of(getUser("BARK_PASSWORD")))
+                .thenThrow(new UserServiceUnavailableException("open"));
+
+        customUserDetailsService.loadUserByUsername("BARK");
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        var userDetails = customUserDetailsService.loadUserByUsername("BARK");
+
+        Assertions.assertEquals("BARK_PASSWORD", userDetails.getPassword());
+    }
+
+    @Test
+    public void testUserDetailsServiceRejectedRefreshServesCachedUser() {
+        //a full refresh pool rejects the task, the request keeps the entry it already has
+        var rejecting = new CustomUserDetailsService(userService, 100, Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(10),
+                new SimpleMeterRegistry(), verifiedCredentialCache, nanos::get, Runnable::run, runnable -> {
+                    throw new RejectedExecutionException("full");
+                });
+        Mockito.when(userService.findUserById("BARK")).thenReturn(Optional.of(getUser("BARK_PASSWORD")));
+
+        rejecting.loadUserByUsername("BARK");
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        var userDetails = rejecting.loadUserByUsername("BARK");
+
+        Assertions.assertEquals("BARK_PASSWORD", userDetails.getPassword());
+        Mockito.verify(userService, Mockito.times(1)).findUserById("BARK");
+    }
+
+    @Test
+    public void testUserDetailsServiceLookupRunsOffTheCallingThread() {
+        //the compute runs on the caller, a lookup on another thread can't be holding the map lock
+        var virtual = new CustomUserDetailsService(userService, 100, Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(10),
+                new SimpleMeterRegistry(), verifiedCredentialCache, nanos::get, runnable -> Thread.ofVirtual().start(runnable), Runnable::run);
+        var lookupThread = new AtomicReference<Thread>();
+        Mockito.when(userService.findUserById("BARK")).thenAnswer(invocation -> {
+            lookupThread.set(Thread.currentThread());
+            return Optional.of(getUser("BARK_PASSWORD"));
+        });
+
+        var userDetails = virtual.loadUserByUsername("BARK");
+
+        Assertions.assertEquals("BARK_PASSWORD", userDetails.getPassword());
+        Assertions.assertNotSame(Thread.currentThread(), lookupThread.get());
+        Assertions.assertTrue(lookupThread.get().isVirtual());
+    }
+
+    @Test
+    public void testUserDetailsServiceEvict() {
+        Mockito.when(userService.findUserById("BARK")).thenReturn(Optional.of(getUser("BARK_PASSWORD")));
+
+        customUserDetailsService.loadUserByUsername("BARK");
+        customUserDetailsService.evict("BARK");
+        customUserDetailsService.loadUserByUsername("BARK");
+
+        Mockito.verify(userService, Mockito.times(2)).findUserById("BARK");
+        Mockito.verify(verifiedCredentialCache, Mockito.times(1)).revoke("BARK");
+    }
+
+    private static UserDTO getUser(String password) {
+        return new UserDTO(TestHelper.ID, password, "email", "password", Collections.emptyList());
+    }
+
+}
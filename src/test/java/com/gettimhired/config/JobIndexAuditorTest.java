@@ -0,0 +1,148 @@
+package com.gettimhired.config;
+
+import com.gettimhired.model.mongo.Job;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class JobIndexAuditorTest {
+
+    private JobIndexAuditor jobIndexAuditor;
+    private MongoTemplate mongoTemplate;
+    private MongoDatabase mongoDatabase;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void init() {
+        mongoTemplate = mock(MongoTemplate.class);
+        mongoDatabase = mock(MongoDatabase.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        AggregateIterable<Document> indexStats = mock(AggregateIterable.class);
+        when(mongoTemplate.getCollectionName(Job.class)).thenReturn("job");
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        when(mongoTemplate.getCollection("job")).thenReturn(collection);
+        when(collection.aggregate(anyList())).thenReturn(indexStats);
+        doAnswer(invocation -> {
+            Consumer<Document> consumer = invocation.getArgument(0);
+            consumer.accept(new Document("name", "_id_").append("accesses", new Document("ops", 12L)));
+            consumer.accept(new Document("name", "userId_1_candidateId_1").append("accesses", new Document("ops", 40L)));
+            consumer.accept(new Document("name", "userId_1").append("accesses", new Document("ops", 0L)));
+            return null;
+        }).when(indexStats).forEach(any());
+        jobIndexAuditor = new JobIndexAuditor(mongoTemplate);
+    }
+
+    @Test
+    public void testPlanReadsIndexScan() {
+        var report = JobIndexAuditor.plan("findAllByUserIdAndCandidateId", indexScan("userId_1_candidateId_1", 3, 3));
+
+        assertEquals("FETCH", report.winningStage());
+        assertEquals(List.of("FETCH", "IXSCAN"), report.stages());
+        assertEquals(List.of("userId_1_candidateId_1"), report.indexes());
+        assertFalse(report.collectionScan());
+        assertEquals(3L, report.docsExamined());
+        assertEquals(3L, report.returned());
+    }
+
+    @Test
+    public void testPlanFlagsCollectionScan() {
+        var report = JobIndexAuditor.plan("findAllByCandidateIdAndEndDateIsNull", collectionScan(5000, 2));
+
+        assertTrue(report.collectionScan());
+        assertEquals(List.of(), report.indexes());
+        assertEquals(5000L, report.docsExamined());
+    }
+
+    @Test
+    public void testPlanUnwrapsSlotBasedPlan() {
+        var explain = new Document("queryPlanner", new Document("winningPlan", new Document("queryPlan",
+                new Document("stage", "FETCH").append("inputStage",
+                        new Document("stage", "IXSCAN").append("indexName", "candidateId_1_endDate_-1")))));
+
+        var report = JobIndexAuditor.plan("findAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc", explain);
+
+        assertEquals(List.of("candidateId_1_endDate_-1"), report.indexes());
+    }
+
+    @Test
+    public void testPlanCollectsEveryBranchOfAnOr() {
+        var explain = new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "SUBPLAN").append("inputStage",
+                        new Document("stage", "OR").append("inputStages", List.of(
+                                new Document("stage", "IXSCAN").append("indexName", "candidateId_1"),
+                                new Document("stage", "COLLSCAN"))))));
+
+        var report = JobIndexAuditor.plan("or", explain);
+
+        assertEquals(List.of("candidateId_1"), report.indexes());
+        assertTrue(report.collectionScan());
+    }
+
+    @Test
+    public void testReportListsUnusedIndexes() {
+        var queries = List.of(JobIndexAuditor.plan("findAllByUserIdAndCandidateId", indexScan("userId_1_candidateId_1", 1, 1)));
+
+        var report = JobIndexAuditor.report(queries, Map.of("_id_", 1L, "userId_1_candidateId_1", 1L, "userId_1", 0L));
+
+        assertEquals(List.of("userId_1"), report.unusedIndexes());
+        assertEquals(List.of(), report.collectionScans());
+    }
+
+    @Test
+    public void testAuditExplainsEveryQueryShape() {
+        when(mongoDatabase.runCommand(any(Document.class))).thenReturn(indexScan("userId_1_candidateId_1", 1, 1));
+
+        var report = jobIndexAuditor.audit();
+
+        verify(mongoDatabase, times(JobIndexAuditor.QUERY_SHAPES.size())).runCommand(any(Document.class));
+        assertEquals(JobIndexAuditor.QUERY_SHAPES.size(), report.queries().size());
+        assertEquals(List.of("userId_1"), report.unusedIndexes());
+        assertEquals(0L, report.indexAccesses().get("userId_1"));
+    }
+
+    @Test
+    public void testAuditFailsHotQueryOnCollectionScan() {
+        when(mongoDatabase.runCommand(any(Document.class))).thenAnswer(invocation -> {
+            Document command = invocation.getArgument(0);
+            var filter = command.get("explain", Document.class).get("filter", Document.class);
+            //no index leads with candidateId alone here, so the end date queries scan
+            return filter.containsKey("userId") ? indexScan("userId_1_candidateId_1", 1, 1) : collectionScan(5000, 1);
+        });
+
+        var report = jobIndexAuditor.audit();
+
+        assertEquals(List.of(
+                "findAllByCandidateIdAndEndDateIsNull",
+                "findAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc"
+        ), report.collectionScans());
+    }
+
+    private static Document indexScan(String indexName, long docsExamined, long returned) {
+        return new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "FETCH").append("inputStage",
+                        new Document("stage", "IXSCAN").append("indexName", indexName))))
+                .append("executionStats", new Document("totalDocsExamined", docsExamined)
+                        .append("totalKeysExamined", docsExamined)
+                        .append("nReturned", returned));
+    }
+
+    private static Document collectionScan(long docsExamined, long returned) {
+        return new Document("queryPlanner", new Document("winningPlan", new Document("stage", "COLLSCAN")))
+                .append("executionStats", new Document("totalDocsExamined", docsExamined)
+                        .append("totalKeysExamined", 0L)
+                        .append("nReturned", returned));
+    }
+}
@@ -0,0 +1,46 @@
+package com.gettimhired.config;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MongoTopologyTest {
+
+    private MongoDatabase mongoDatabase;
+    private MongoTopology mongoTopology;
+
+    @BeforeEach
+    public void init() {
+        var mongoTemplate = mock(MongoTemplate.class);
+        mongoDatabase = mock(MongoDatabase.class);
+        when(mongoTemplate.getDb()).thenReturn(mongoDatabase);
+        mongoTopology = new MongoTopology(mongoTemplate);
+    }
+
+    @Test
+    public void testReplicaSetIsReplicated() {
+        when(mongoDatabase.runCommand(any(Document.class))).thenReturn(new Document("isWritablePrimary", true).append("setName", "rs0"));
+
+        assertTrue(mongoTopology.isReplicated());
+    }
+
+    @Test
+    public void testMongosIsReplicated() {
+        when(mongoDatabase.runCommand(any(Document.class))).thenReturn(new Document("isWritablePrimary", true).append("msg", "isdbgrid"));
+
+        assertTrue(mongoTopology.isReplicated());
+    }
+
+    @Test
+    public void testStandaloneIsNotReplicated() {
+        when(mongoDatabase.runCommand(any(Document.class))).thenReturn(new Document("isWritablePrimary", true));
+
+        assertFalse(mongoTopology.isReplicated());
+    }
+}
@@ -0,0 +1,46 @@
+package com.gettimhired.config;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestContextHolderTest {
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.clear();
+    }
+
+    @Test
+    public void testWithHeaderRestoresOuterHeader() {
+        RequestContextHolder.setHeader("Bearer OUTER");
+
+        var inner = RequestContextHolder.withHeader("Bearer INNER", RequestContextHolder::getHeader);
+
+        assertEquals("Bearer INNER", inner);
+        assertEquals("Bearer OUTER", RequestContextHolder.getHeader());
+    }
+
+    @Test
+    public void testWithHeaderClearsWhenThereWasNoOuterHeader() {
+        RequestContextHolder.withHeader("Bearer INNER", RequestContextHolder::getHeader);
+
+        assertNull(RequestContextHolder.getHeader());
+    }
+
+    @Test
+    public void testSnapshotCarriesHeaderOntoVirtualThread() throws Exception {
+        RequestContextHolder.setHeader("Bearer BARK");
+        var snapshot = ContextSnapshotFactory.builder().build().captureAll();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            assertEquals("Bearer BARK", executor.submit(snapshot.wrap(RequestContextHolder::getHeader)).get());
+            //virtual threads don't inherit it, only the wrapped task sees the header
+            assertNull(executor.submit(RequestContextHolder::getHeader).get());
+        }
+    }
+}
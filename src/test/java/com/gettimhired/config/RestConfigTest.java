@@ -0,0 +1,137 @@
+package com.gettimhired.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestConfigTest {
+
+    private static final int CALLERS = 50;
+    private static final int CALLS_PER_CALLER = 20;
+    private static final long STUB_DELAY_MILLIS = 5;
+
+    Logger log = LoggerFactory.getLogger(RestConfigTest.class);
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            //the Duration @Values need boot's conversion service, like the real application has
+            .withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance()))
+            .withUserConfiguration(RestConfig.class)
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+            .withPropertyValues(
+                    "resumejobservice.mainapp.host=http://localhost:1",
+                    "resumejobservice.userservice.host=http://localhost:2"
+            );
+
+    @Test
+    public void testHttpClientsAreClosedWithTheContext() {
+        var requestFactories = new HttpComponentsClientHttpRequestFactory[2];
+
+        contextRunner.run(context -> {
+            requestFactories[0] = context.getBean("resumeSiteRequestFactory", HttpComponentsClientHttpRequestFactory.class);
+            requestFactories[1] = context.getBean("userServiceRequestFactory", HttpComponentsClientHttpRequestFactory.class);
+        });
+
+        //a closed pool refuses to lease a connection
+        for (HttpComponentsClientHttpRequestFactory requestFactory : requestFactories) {
+            assertThrows(IllegalStateException.class, () -> requestFactory.getHttpClient().execute(new HttpGet("http://localhost:1/"), response -> null));
+        }
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    public void testPooledClientReusesConnectionsUnderConcurrency() throws Exception {
+        var connections = ConcurrentHashMap.<Integer>newKeySet();
+        var factory = new TomcatServletWebServerFactory(0);
+        new TomcatVirtualThreadsWebServerFactoryCustomizer().customize(factory);
+        var stub = factory.getWebServer(servletContext -> servletContext.addServlet("userService", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                connections.add(request.getRemotePort());
+                try {
+                    Thread.sleep(STUB_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.setContentType("application/json");
+                response.getWriter().write("{\"id\":\"BARK\"}");
+            }
+        }).addMapping("/*"));
+        stub.start();
+        try {
+            var baseUrl = "http://localhost:" + stub.getPort();
+            //what the beans were before, RestClient over the jdk's HttpURLConnection
+            var unpooled = RestClient.builder().baseUrl(baseUrl).requestFactory(new SimpleClientHttpRequestFactory()).build();
+            contextRunner.withPropertyValues("resumejobservice.userservice.host=" + baseUrl).run(context -> {
+                var pooled = context.getBean("userServiceRestClient", RestClient.class);
+                //warm up both clients, a cold jit would count against whichever runs first
+                call(unpooled, CALLERS);
+                call(pooled, CALLERS);
+
+                connections.clear();
+                var unpooledP99 = call(unpooled, CALLERS * CALLS_PER_CALLER);
+                var unpooledConnections = connections.size();
+                connections.clear();
+                var pooledP99 = call(pooled, CALLERS * CALLS_PER_CALLER);
+                var pooledConnections = connections.size();
+                log.info("unpooled p99={}ms connections={} pooled p99={}ms connections={}",
+                        unpooledP99, unpooledConnections, pooledP99, pooledConnections);
+
+                //every caller keeps its connection, nothing is torn down and reopened mid run
+                assertTrue(pooledConnections <= CALLERS);
+                assertTrue(pooledP99 <= unpooledP99);
+            });
+        } finally {
+            stub.stop();
+        }
+    }
+
+    //CALLERS virtual threads share the calls, returns the p99 latency in millis
+    private static long call(RestClient restClient, int calls) throws Exception {
+        var latencies = new ArrayList<Long>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var callers = new ArrayList<Future<?>>();
+            for (int i = 0; i < CALLERS; i++) {
+                callers.add(executor.submit(() -> {
+                    for (int j = 0; j < calls / CALLERS; j++) {
+                        var start = System.nanoTime();
+                        restClient.get().uri("/api/users/BARK").retrieve().body(String.class);
+                        synchronized (latencies) {
+                            latencies.add(System.nanoTime() - start);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> caller : callers) {
+                caller.get(60, TimeUnit.SECONDS);
+            }
+        }
+        var sorted = latencies.stream().sorted().toList();
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1));
+    }
+}
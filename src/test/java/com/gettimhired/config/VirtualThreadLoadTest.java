@@ -0,0 +1,238 @@
+package com.gettimhired.config;
+
+import com.gettimhired.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.coyote.AbstractProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.DefaultSecurityFilterChain;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//drives a real tomcat through the auth path a request takes in the app, the authorization header
+//filter and basic auth over CachingAuthenticationProvider, with a slow user service behind it.
+//Runs once on a bounded platform pool and once on virtual threads
+class VirtualThreadLoadTest {
+
+    private static final int PLATFORM_MAX_THREADS = 10;
+    private static final int REQUESTS = 100;
+    private static final long USER_SERVICE_DELAY_MILLIS = 250;
+    private static final String PASSWORD = "BARK_PASSWORD";
+
+    Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+    //cheap rounds, the request threads are what's measured, not bcrypt on a small runner
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private final AtomicInteger headerMismatches = new AtomicInteger();
+    private WebServer userServiceStub;
+
+    @BeforeEach
+    public void init() {
+        var passwordHash = passwordEncoder.encode(PASSWORD);
+        //the stub runs on virtual threads so it's never the limit being measured
+        userServiceStub = server(true, servletContext -> servletContext.addServlet("userService", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                //every lookup has to arrive with the caller's own credentials
+                var id = request.getRequestURI().split("/")[3];
+                if (!basic(id).equals(request.getHeader("Authorization"))) {
+                    headerMismatches.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(USER_SERVICE_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response.setContentType("application/json");
+                response.getWriter().write("{\"id\":\"" + id + "\",\"password\":\"" + passwordHash + "\"}");
+            }
+        }).addMapping("/api/users/*"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userServiceStub.stop();
+    }
+
+    @Test
+    public void testVirtualThreadsRaiseConcurrency() throws Exception {
+        var platform = run(false, REQUESTS);
+        var virtual = run(true, REQUESTS);
+        log.info("platform threads maxInFlight={} virtual threads maxInFlight={}", platform.maxInFlight(), virtual.maxInFlight());
+
+        assertEquals(REQUESTS, platform.ok());
+        assertEquals(REQUESTS, virtual.ok());
+        assertEquals(0, headerMismatches.get());
+        assertTrue(platform.maxInFlight() <= PLATFORM_MAX_THREADS);
+        assertTrue(virtual.maxInFlight() > PLATFORM_MAX_THREADS);
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    public void testVirtualThreadsCutTailLatency() throws Exception {
+        //warm up both paths first, a cold jit would count against whichever runs first
+        run(false, PLATFORM_MAX_THREADS);
+        run(true, PLATFORM_MAX_THREADS);
+        var platform = run(false, REQUESTS);
+        var virtual = run(true, REQUESTS);
+        log.info("platform threads p99={}ms virtual threads p99={}ms", platform.p99Millis(), virtual.p99Millis());
+
+        assertEquals(REQUESTS, platform.ok());
+        assertEquals(REQUESTS, virtual.ok());
+        assertTrue(virtual.p99Millis() < platform.p99Millis());
+    }
+
+    private LoadResult run(boolean virtualThreads, int requests) throws Exception {
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        var securityFilterChain = securityFilterChain();
+        var server = server(virtualThreads, servletContext -> {
+            servletContext.addFilter("inFlight", new HttpFilter() {
+                @Override
+                protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                        throws IOException, ServletException {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        chain.doFilter(request, response);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            }).addMappingForUrlPatterns(null, false, "/*");
+            servletContext.addFilter("authorizationHeaderFilter", new AuthorizationHeaderFilter())
+                    .addMappingForUrlPatterns(null, true, "/*");
+            servletContext.addFilter("springSecurityFilterChain", securityFilterChain)
+                    .addMappingForUrlPatterns(null, true, "/*");
+            servletContext.addServlet("users", new HttpServlet() {
+                @Override
+                protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                    var authentication = SecurityContextHolder.getContext().getAuthentication();
+                    var id = request.getPathInfo().substring(1);
+                    response.setStatus(authentication != null && id.equals(authentication.getName()) ? 200 : 403);
+                }
+            }).addMapping("/users/*");
+        });
+        try (var clientExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .build();
+            var latencies = new ArrayList<Long>();
+            var calls = new ArrayList<CompletableFuture<Integer>>();
+            for (int i = 0; i < requests; i++) {
+                var id = "BARK_" + i;
+                var request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/users/" + id))
+                        .header("Authorization", basic(id))
+                        .timeout(Duration.ofSeconds(30))
+                        .build();
+                var start = System.nanoTime();
+                calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> {
+                            synchronized (latencies) {
+                                latencies.add(System.nanoTime() - start);
+                            }
+                            return response.statusCode();
+                        }));
+            }
+            var ok = 0;
+            for (CompletableFuture<Integer> call : calls) {
+                if (call.get(60, TimeUnit.SECONDS) == 200) {
+                    ok++;
+                }
+            }
+            return new LoadResult(ok, maxInFlight.get(), p99Millis(latencies));
+        } finally {
+            server.stop();
+        }
+    }
+
+    //the same filters SecurityConfig puts in front of /api/** for basic auth
+    private FilterChainProxy securityFilterChain() throws ServletException {
+        var verifiedCredentialCache = new VerifiedCredentialCache(1000, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        var userDetailsService = new CustomUserDetailsService(userService(), 1000, Duration.ofMinutes(1), Duration.ofMinutes(5),
+                Duration.ofSeconds(10), new SimpleMeterRegistry(), verifiedCredentialCache, Runnable::run);
+        var authenticationProvider = new CachingAuthenticationProvider(userDetailsService, passwordEncoder, verifiedCredentialCache);
+        var entryPoint = new BasicAuthenticationEntryPoint();
+        entryPoint.setRealmName("jobs-service");
+        var basicAuthenticationFilter = new BasicAuthenticationFilter(new ProviderManager(authenticationProvider), entryPoint);
+        var filterChainProxy = new FilterChainProxy(new DefaultSecurityFilterChain(AnyRequestMatcher.INSTANCE,
+                new AuthorizationHeaderFilter(), basicAuthenticationFilter));
+        filterChainProxy.afterPropertiesSet();
+        return filterChainProxy;
+    }
+
+    private static WebServer server(boolean virtualThreads, Consumer<ServletContext> servlets) {
+        var factory = new TomcatServletWebServerFactory(0);
+        //a backlog that holds the whole burst, otherwise dropped connects add a retransmit to both runs
+        factory.addProtocolHandlerCustomizers(handler -> ((AbstractProtocol<?>) handler).setAcceptCount(REQUESTS));
+        if (virtualThreads) {
+            new TomcatVirtualThreadsWebServerFactoryCustomizer().customize(factory);
+        } else {
+            factory.addProtocolHandlerCustomizers(handler -> ((AbstractProtocol<?>) handler).setMaxThreads(PLATFORM_MAX_THREADS));
+        }
+        var server = factory.getWebServer(servlets::accept);
+        server.start();
+        return server;
+    }
+
+    private UserService userService() {
+        var restClient = RestClient.builder()
+                .baseUrl("http://localhost:" + userServiceStub.getPort())
+                .requestFactory(new SimpleClientHttpRequestFactory())
+                .build();
+        //the bulkhead is opened up so the servlet threads are the only limit being measured
+        return new UserService(restClient, new SimpleMeterRegistry(), 5, Duration.ofSeconds(10), 1, REQUESTS, Duration.ofSeconds(1));
+    }
+
+    private static String basic(String id) {
+        return "Basic " + Base64.getEncoder().encodeToString((id + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long p99Millis(List<Long> latencies) {
+        var sorted = latencies.stream().sorted().toList();
+        var index = (int) Math.ceil(sorted.size() * 0.99) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(index));
+    }
+
+    private record LoadResult(int ok, int maxInFlight, long p99Millis) {
+    }
+}
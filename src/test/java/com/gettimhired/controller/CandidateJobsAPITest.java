@@ -0,0 +1,53 @@
+package com.gettimhired.controller;
+
+import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.CandidateJobsDTO;
+import com.gettimhired.service.JobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static com.gettimhired.TestHelper.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CandidateJobsAPITest {
+
+    private CandidateJobsAPI candidateJobsApi;
+    private JobService jobService;
+    private UserDetails userDetails;
+
+    @BeforeEach
+    public void init() {
+        userDetails = mock(UserDetails.class);
+        jobService = mock(JobService.class);
+        candidateJobsApi = new CandidateJobsAPI(jobService);
+    }
+
+    @Test
+    public void testGetJobsForCandidatesHappy() {
+        var jobs = List.of(new CandidateJobsDTO(CANDIDATE_ID, List.of()), new CandidateJobsDTO("BARK_C_ID_TWO", List.of()));
+        when(jobService.findAllJobsForUserAndCandidateIds(USER_ID, List.of(CANDIDATE_ID, "BARK_C_ID_TWO"))).thenReturn(jobs);
+
+        var result = candidateJobsApi.getJobsForCandidates(userDetails, USER_ID, List.of(CANDIDATE_ID, "BARK_C_ID_TWO"));
+
+        verify(jobService, times(1)).findAllJobsForUserAndCandidateIds(USER_ID, List.of(CANDIDATE_ID, "BARK_C_ID_TWO"));
+        assertEquals(HttpStatusCode.valueOf(200), result.getStatusCode());
+        assertEquals(jobs, result.getBody());
+    }
+
+    @Test
+    public void testGetJobsForCandidatesTooMany() {
+        when(jobService.findAllJobsForUserAndCandidateIds(USER_ID, List.of(CANDIDATE_ID)))
+                .thenThrow(new APIUpdateException(HttpStatus.BAD_REQUEST));
+
+        var result = candidateJobsApi.getJobsForCandidates(userDetails, USER_ID, List.of(CANDIDATE_ID));
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        assertNull(result.getBody());
+    }
+}
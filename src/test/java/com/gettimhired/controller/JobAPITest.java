@@ -1,19 +1,28 @@
 package com.gettimhired.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.JobBulkResultDTO;
 import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.dto.JobPageDTO;
+import com.gettimhired.model.dto.update.JobPatchDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
 import com.gettimhired.service.JobService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static com.gettimhired.TestHelper.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,7 +39,7 @@ class JobAPITest {
     public void init() {
         userDetails = mock(UserDetails.class);
         jobService = mock(JobService.class);
-        jobApi = new JobAPI(jobService);
+        jobApi = new JobAPI(jobService, new ObjectMapper().findAndRegisterModules());
     }
 
     @Test
@@ -49,7 +58,169 @@ class JobAPITest {
                         CANDIDATE_ID
                 );
         assertNotNull(result);
-        assertEquals(0, result.size());
+        assertEquals(0, result.getBody().size());
+        assertNotNull(result.getHeaders().getETag());
+    }
+
+    @Test
+    public void testGetAllJobsETagChangesWithVersion() {
+        var job = getJobDto();
+        var updated = new JobDTO(job.id(), job.userId(), job.candidateId(), job.companyName(), job.title(), job.startDate(),
+                job.endDate(), job.skills(), job.achievements(), job.currentlyWorking(), job.reasonForLeaving(), 1L);
+        when(jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID))
+                .thenReturn(List.of(job))
+                .thenReturn(List.of(job))
+                .thenReturn(List.of(updated));
+
+        var first = jobApi.getAllJobs(userDetails, CANDIDATE_ID, USER_ID).getHeaders().getETag();
+        var second = jobApi.getAllJobs(userDetails, CANDIDATE_ID, USER_ID).getHeaders().getETag();
+        var third = jobApi.getAllJobs(userDetails, CANDIDATE_ID, USER_ID).getHeaders().getETag();
+
+        assertEquals(first, second);
+        assertNotEquals(first, third);
+    }
+
+    @Test
+    public void testGetJobByIdHasVersionETag() {
+        var job = getJobDto();
+        when(jobService.findJobByIdAndUserId(job.id(), USER_ID)).thenReturn(Optional.of(job));
+
+        var result = jobApi.getJobById(userDetails, job.id(), CANDIDATE_ID, USER_ID);
+
+        assertEquals("\"0\"", result.getHeaders().getETag());
+    }
+
+    @Test
+    public void testUpdateJobPassesIfMatchVersion() {
+        var jobUpdateDTO = new JobUpdateDTO("BARK_NAME", "BARK_TITLE", LocalDate.now(), null, List.of(), List.of(), true, "BARK_LEAVE", null);
+        when(jobService.updateJob(ID, USER_ID, CANDIDATE_ID, jobUpdateDTO, 3L)).thenReturn(Optional.of(getJobDto()));
+
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, "\"3\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(jobService).updateJob(ID, USER_ID, CANDIDATE_ID, jobUpdateDTO, 3L);
+    }
+
+    @Test
+    public void testUpdateJobStaleBodyVersionIsConflict() {
+        var jobUpdateDTO = new JobUpdateDTO("BARK_NAME", "BARK_TITLE", LocalDate.now(), null, List.of(), List.of(), true, "BARK_LEAVE", 3L);
+        when(jobService.updateJob(ID, USER_ID, CANDIDATE_ID, jobUpdateDTO, 3L)).thenThrow(new APIUpdateException(HttpStatus.CONFLICT));
+
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, null);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    public void testUpdateJobStaleIfMatchIsPreconditionFailed() {
+        var jobUpdateDTO = new JobUpdateDTO("BARK_NAME", "BARK_TITLE", LocalDate.now(), null, List.of(), List.of(), true, "BARK_LEAVE", 3L);
+        when(jobService.updateJob(ID, USER_ID, CANDIDATE_ID, jobUpdateDTO, 4L)).thenThrow(new APIUpdateException(HttpStatus.CONFLICT));
+
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, "\"4\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+        verify(jobService, times(1)).updateJob(ID, USER_ID, CANDIDATE_ID, jobUpdateDTO, 4L);
+    }
+
+    @Test
+    public void testCreateJobsHappy() {
+        var jobs = List.of(getJobDto(), getJobDto());
+        var bulkResult = new JobBulkResultDTO(2, 0, List.of());
+        when(jobService.createJobs(USER_ID, CANDIDATE_ID, jobs)).thenReturn(bulkResult);
+
+        var response = jobApi.createJobs(userDetails, jobs, CANDIDATE_ID, USER_ID);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(bulkResult, response.getBody());
+    }
+
+    @Test
+    public void testCreateJobsTooManyIsBadRequest() {
+        var jobs = List.of(getJobDto());
+        when(jobService.createJobs(USER_ID, CANDIDATE_ID, jobs)).thenThrow(new APIUpdateException(HttpStatus.BAD_REQUEST));
+
+        var response = jobApi.createJobs(userDetails, jobs, CANDIDATE_ID, USER_ID);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testCreateJobsNullOrEmptyIsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, jobApi.createJobs(userDetails, null, CANDIDATE_ID, USER_ID).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, jobApi.createJobs(userDetails, List.of(), CANDIDATE_ID, USER_ID).getStatusCode());
+
+        verify(jobService, never()).createJobs(any(), any(), any());
+    }
+
+    @Test
+    public void testPatchJobHappy() {
+        var patch = new JobPatchDTO(null, "BARK_TITLE", null, null, null, null, null, List.of("Kotlin"), null, null, null, null);
+        when(jobService.patchJob(ID, USER_ID, CANDIDATE_ID, patch, 2L)).thenReturn(Optional.of(getJobDto()));
+
+        var response = jobApi.patchJob(userDetails, patch, ID, CANDIDATE_ID, USER_ID, "\"2\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getHeaders().getETag());
+        verify(jobService, times(1)).patchJob(ID, USER_ID, CANDIDATE_ID, patch, 2L);
+    }
+
+    @Test
+    public void testPatchJobBadRequest() {
+        var patch = new JobPatchDTO(null, null, null, null, null, null, null, null, null, null, null, null);
+        when(jobService.patchJob(ID, USER_ID, CANDIDATE_ID, patch, null)).thenThrow(new APIUpdateException(HttpStatus.BAD_REQUEST));
+
+        var response = jobApi.patchJob(userDetails, patch, ID, CANDIDATE_ID, USER_ID, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testUpdateJobWeakIfMatchIsPreconditionFailed() {
+        var jobUpdateDTO = new JobUpdateDTO("BARK_NAME", "BARK_TITLE", LocalDate.now(), null, List.of(), List.of(), true, "BARK_LEAVE", null);
+
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, "W/\"3\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+        verifyNoInteractions(jobService);
+    }
+
+    @Test
+    public void testStreamAllJobsWritesOneJsonDocumentPerLineAndClosesStream() throws Exception {
+        var closed = new boolean[]{false};
+        var jobs = Stream.of(getJobDto(), getJobDto()).onClose(() -> closed[0] = true);
+        when(jobService.streamAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(jobs);
+
+        var result = jobApi.streamAllJobs(userDetails, CANDIDATE_ID, USER_ID);
+        var out = new ByteArrayOutputStream();
+        result.getBody().writeTo(out);
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON, result.getHeaders().getContentType());
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{") && lines[0].endsWith("}"));
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void testGetJobPageHappy() {
+        var page = new JobPageDTO(List.of(getJobDto()), "BARK_CURSOR");
+        when(jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 20, null)).thenReturn(page);
+
+        var result = jobApi.getJobPage(userDetails, CANDIDATE_ID, USER_ID, 20, null);
+
+        verify(jobService, times(1)).findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 20, null);
+        assertEquals(HttpStatusCode.valueOf(200), result.getStatusCode());
+        assertEquals(page, result.getBody());
+    }
+
+    @Test
+    public void testGetJobPageBadRequest() {
+        when(jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 0, null)).thenThrow(new APIUpdateException(HttpStatus.BAD_REQUEST));
+
+        var result = jobApi.getJobPage(userDetails, CANDIDATE_ID, USER_ID, 0, null);
+
+        assertEquals(HttpStatusCode.valueOf(400), result.getStatusCode());
     }
 
     @Test
@@ -107,11 +278,11 @@ class JobAPITest {
         var jobUpdateDTO = getJobUpdateDto();
         var updatedJobDTO = getJobDto();
         when(userDetails.getUsername()).thenReturn(USER_ID);
-        when(jobService.updateJob(any(String.class), any(String.class), any(String.class), any(JobUpdateDTO.class)))
+        when(jobService.updateJob(any(String.class), any(String.class), any(String.class), any(JobUpdateDTO.class), isNull()))
                 .thenReturn(Optional.of(updatedJobDTO));
 
 
-        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID);
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, null);
 
 
         assertNotNull(response);
@@ -124,11 +295,11 @@ class JobAPITest {
 
         var jobUpdateDTO = getJobUpdateDto();
         when(userDetails.getUsername()).thenReturn(USER_ID);
-        when(jobService.updateJob(any(String.class), any(String.class), any(String.class), any(JobUpdateDTO.class)))
+        when(jobService.updateJob(any(String.class), any(String.class), any(String.class), any(JobUpdateDTO.class), isNull()))
                 .thenReturn(Optional.empty());
 
 
-        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID);
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, null);
 
 
         assertNotNull(response);
@@ -142,11 +313,11 @@ class JobAPITest {
         var jobUpdateDTO = getJobUpdateDto();
         APIUpdateException apiUpdateException = new APIUpdateException(HttpStatus.BAD_REQUEST);
         when(userDetails.getUsername()).thenReturn(USER_ID);
-        when(jobService.updateJob(any(String.class), any(String.class), any(String.class), any(JobUpdateDTO.class)))
+        when(jobService.updateJob(any(String.class), any(String.class), any(String.class), any(JobUpdateDTO.class), isNull()))
                 .thenThrow(apiUpdateException);
 
 
-        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID);
+        var response = jobApi.updateJob(userDetails, jobUpdateDTO, ID, CANDIDATE_ID, USER_ID, null);
 
 
         assertNotNull(response);
@@ -195,7 +366,8 @@ class JobAPITest {
                 new ArrayList<>(),
                 new ArrayList<>(),
                 true,
-                "BARK_LEAVE"
+                "BARK_LEAVE",
+                null
         );
     }
 
@@ -211,7 +383,8 @@ class JobAPITest {
                 new ArrayList<>(),
                 new ArrayList<>(),
                 true,
-                "BARK_LEAVE"
+                "BARK_LEAVE",
+                0L
         );
     }
 
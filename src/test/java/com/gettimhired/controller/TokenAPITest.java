@@ -0,0 +1,48 @@
+package com.gettimhired.controller;
+
+import com.gettimhired.model.dto.TokenDTO;
+import com.gettimhired.service.TokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+
+import java.util.List;
+
+import static com.gettimhired.TestHelper.USER_ID;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TokenAPITest {
+
+    private TokenAPI tokenApi;
+    private TokenService tokenService;
+
+    @BeforeEach
+    public void init() {
+        tokenService = mock(TokenService.class);
+        tokenApi = new TokenAPI(tokenService);
+    }
+
+    @Test
+    public void testCreateTokenHappy() {
+        var token = new TokenDTO("BARK_TOKEN", 1L);
+        when(tokenService.issueToken(USER_ID)).thenReturn(token);
+
+        var result = tokenApi.createToken(UsernamePasswordAuthenticationToken.authenticated(USER_ID, null, List.of()));
+
+        verify(tokenService, times(1)).issueToken(USER_ID);
+        assertEquals(HttpStatusCode.valueOf(200), result.getStatusCode());
+        assertEquals(token, result.getBody());
+    }
+
+    @Test
+    public void testCreateTokenWithTokenIsForbidden() {
+        var result = tokenApi.createToken(new PreAuthenticatedAuthenticationToken(USER_ID, null, List.of()));
+
+        verify(tokenService, never()).issueToken(anyString());
+        assertEquals(HttpStatusCode.valueOf(403), result.getStatusCode());
+    }
+}
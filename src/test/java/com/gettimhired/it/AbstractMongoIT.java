@@ -0,0 +1,22 @@
+package com.gettimhired.it;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+//the whole application against a real mongo, skipped where docker isn't available.
+//The container is a single node replica set, so transactions and change streams work
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "resumejobservice.auth.token.allow-random-secret=true")
+abstract class AbstractMongoIT {
+
+    //started once and shared, every subclass reuses the same cached spring context
+    @ServiceConnection
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    static {
+        MONGO.start();
+    }
+}
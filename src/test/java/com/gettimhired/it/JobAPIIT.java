@@ -7,9 +7,12 @@ import com.gettimhired.model.dto.JobDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
 import com.gettimhired.service.JobService;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -20,18 +23,29 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(JobAPI.class)
 @Import(TestSecurityConfig.class)
 class JobAPIIT {
 
+    Logger log = LoggerFactory.getLogger(JobAPIIT.class);
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -62,12 +76,69 @@ class JobAPIIT {
         verify(jobService, times(1)).findAllJobsForUserAndCandidateId("user1", candidateId);
     }
 
+    @Test
+    @WithMockUser(username = "user1")
+    void testStreamAllJobs_NdjsonAccept() throws Exception {
+        String candidateId = "1";
+        when(jobService.streamAllJobsForUserAndCandidateId("user1", candidateId)).thenReturn(Stream.empty());
+
+        var mvcResult = mockMvc.perform(get("/api/candidates/{candidateId}/jobs", candidateId)
+                        .queryParam("userId", "user1")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+
+        verify(jobService, times(1)).streamAllJobsForUserAndCandidateId("user1", candidateId);
+        verify(jobService, never()).findAllJobsForUserAndCandidateId(anyString(), anyString());
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testGetJobById_IfNoneMatchNotModified() throws Exception {
+        String candidateId = "1";
+        String jobId = "1";
+        JobDTO jobDTO = new JobDTO(jobId,"user1",candidateId,null,null,null,null,null,null,null,null,4L);
+        when(jobService.findJobByIdAndUserId(jobId, "user1")).thenReturn(Optional.of(jobDTO));
+
+        mockMvc.perform(get("/api/candidates/{candidateId}/jobs/{id}", candidateId, jobId)
+                        .queryParam("userId", "user1")
+                        .header("If-None-Match", "\"4\"")
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testGetAllJobs_IfNoneMatchNotModified() throws Exception {
+        String candidateId = "1";
+        when(jobService.findAllJobsForUserAndCandidateId("user1", candidateId)).thenReturn(Collections.emptyList());
+
+        var etag = mockMvc.perform(get("/api/candidates/{candidateId}/jobs", candidateId)
+                        .queryParam("userId", "user1")
+                )
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/candidates/{candidateId}/jobs", candidateId)
+                        .queryParam("userId", "user1")
+                        .header("If-None-Match", etag)
+                )
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     @WithMockUser(username = "user1")
     void testGetJobById_Found() throws Exception {
         String candidateId = "1";
         String jobId = "1";
-        JobDTO jobDTO = new JobDTO(null,null,null,null,null,null,null,null,null,null,null);
+        JobDTO jobDTO = new JobDTO(null,null,null,null,null,null,null,null,null,null,null,null);
         when(userDetails.getUsername()).thenReturn("user1");
         when(jobService.findJobByIdAndUserId(jobId, "user1")).thenReturn(Optional.of(jobDTO));
 
@@ -100,7 +171,7 @@ class JobAPIIT {
     @WithMockUser(username = "user1")
     void testCreateJob_Success() throws Exception {
         String candidateId = "1";
-        JobDTO jobDTO = new JobDTO(null,null,null,null,null,null,null,null,null,null,null);
+        JobDTO jobDTO = new JobDTO(null,null,null,null,null,null,null,null,null,null,null,null);
         when(userDetails.getUsername()).thenReturn("user1");
         when(jobService.createJob(eq("user1"), eq(candidateId), any(JobDTO.class))).thenReturn(Optional.of(jobDTO));
 
@@ -163,9 +234,9 @@ class JobAPIIT {
     void testUpdateJob_Success() throws Exception {
         String candidateId = "1";
         String jobId = "1";
-        JobDTO jobDTO = new JobDTO(null,null,null,null,null,null,null,null,null,null,null);
+        JobDTO jobDTO = new JobDTO(null,null,null,null,null,null,null,null,null,null,null,null);
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class))).thenReturn(Optional.of(jobDTO));
+        when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class), isNull())).thenReturn(Optional.of(jobDTO));
 
         mockMvc.perform(put("/api/candidates/{candidateId}/jobs/{id}", candidateId, jobId)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -188,7 +259,7 @@ class JobAPIIT {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").exists());
 
-        verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class));
+        verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class), isNull());
     }
 
     @Test
@@ -197,7 +268,7 @@ class JobAPIIT {
         String candidateId = "1";
         String jobId = "1";
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class))).thenReturn(Optional.empty());
+        when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class), isNull())).thenReturn(Optional.empty());
 
         mockMvc.perform(put("/api/candidates/{candidateId}/jobs/{id}", candidateId, jobId)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -219,7 +290,7 @@ class JobAPIIT {
                 )
                 .andExpect(status().isInternalServerError());
 
-        verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class));
+        verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class), isNull());
     }
 
     @Test
@@ -228,7 +299,7 @@ class JobAPIIT {
         String candidateId = "1";
         String jobId = "1";
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class))).thenThrow(new APIUpdateException(HttpStatus.FORBIDDEN));
+        when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class), isNull())).thenThrow(new APIUpdateException(HttpStatus.FORBIDDEN));
 
         mockMvc.perform(put("/api/candidates/{candidateId}/jobs/{id}", candidateId, jobId)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -250,7 +321,7 @@ class JobAPIIT {
                 )
                 .andExpect(status().isForbidden());
 
-        verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class));
+        verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class), isNull());
     }
 
     @Test
@@ -284,4 +355,66 @@ class JobAPIIT {
 
         verify(jobService, times(1)).deleteJob(eq(jobId), eq("user1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testCreateJobs_NullOrEmptyBodyIsBadRequest() throws Exception {
+        for (String body : new String[]{"null", "[]"}) {
+            mockMvc.perform(post("/api/candidates/{candidateId}/jobs/bulk", "1")
+                            .queryParam("userId", "user1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body)
+                    )
+                    .andExpect(status().isBadRequest());
+        }
+
+        verify(jobService, never()).createJobs(anyString(), anyString(), any());
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    @WithMockUser(username = "user1")
+    void testIfNoneMatchCutsBytesAndTime() throws Exception {
+        String candidateId = "1";
+        var skills = IntStream.range(0, 10).mapToObj(i -> "BARK_SKILL_" + i).toList();
+        var jobs = IntStream.range(0, 500)
+                .mapToObj(i -> new JobDTO("job" + i, "user1", candidateId, "Company " + i, "Title", LocalDate.parse("2021-01-01"),
+                        null, skills, skills, true, null, (long) i))
+                .toList();
+        when(jobService.findAllJobsForUserAndCandidateId("user1", candidateId)).thenReturn(jobs);
+        var etag = mockMvc.perform(get("/api/candidates/{candidateId}/jobs", candidateId).queryParam("userId", "user1"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //warm up both paths, a cold jit would count against whichever runs first
+        poll(candidateId, null, 100);
+        poll(candidateId, etag, 100);
+        var start = System.nanoTime();
+        var fullBytes = poll(candidateId, null, 500);
+        var fullNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        var notModifiedBytes = poll(candidateId, etag, 500);
+        var notModifiedNanos = System.nanoTime() - start;
+        log.info("200 polls bytes={} time={}ms 304 polls bytes={} time={}ms", fullBytes, TimeUnit.NANOSECONDS.toMillis(fullNanos),
+                notModifiedBytes, TimeUnit.NANOSECONDS.toMillis(notModifiedNanos));
+
+        assertEquals(0, notModifiedBytes);
+        assertTrue(notModifiedNanos < fullNanos);
+    }
+
+    //returns the body bytes the polls were sent
+    private long poll(String candidateId, String etag, int polls) throws Exception {
+        var bytes = 0L;
+        for (int i = 0; i < polls; i++) {
+            var request = get("/api/candidates/{candidateId}/jobs", candidateId).queryParam("userId", "user1");
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            var response = mockMvc.perform(request)
+                    .andExpect(etag == null ? status().isOk() : status().isNotModified())
+                    .andReturn().getResponse();
+            bytes += response.getContentAsByteArray().length;
+        }
+        return bytes;
+    }
+}
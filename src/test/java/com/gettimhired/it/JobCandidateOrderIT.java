@@ -0,0 +1,127 @@
+package com.gettimhired.it;
+
+import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.service.JobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+class JobCandidateOrderIT extends AbstractMongoIT {
+
+    private static final String CANDIDATE_ID = "ORDER_CANDIDATE";
+    private static final int JOBS = 5_000;
+
+    Logger log = LoggerFactory.getLogger(JobCandidateOrderIT.class);
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(Query.query(where("candidateId").is(CANDIDATE_ID)), Job.class);
+        var random = new Random(42);
+        var jobs = new ArrayList<Job>();
+        for (int i = 0; i < JOBS; i++) {
+            //one in ten is a current job without an end date
+            var endDate = random.nextInt(10) == 0 ? null : LocalDate.of(2000, 1, 1).plusDays(random.nextInt(9_000));
+            var lines = List.of("Led the BARK migration of service " + i, "Cut BARK latency for team " + i);
+            jobs.add(new Job(UUID.randomUUID().toString(), "ORDER_USER", CANDIDATE_ID, "BARK_NAME", "BARK_TITLE",
+                    LocalDate.of(1999, 1, 1), endDate, lines, lines, endDate == null, null, 0L));
+        }
+        mongoTemplate.insertAll(jobs);
+    }
+
+    @Test
+    public void testCandidateJobsMatchTheHeapSortOrder() {
+        List<JobDTO> streamed;
+        try (var jobs = jobService.findAllJobsByCandidateId(CANDIDATE_ID)) {
+            streamed = jobs.toList();
+        }
+        var sorted = heapSorted();
+
+        //jobs that share an end date may come back in either order, the end dates have to line up
+        assertEquals(sorted.stream().map(JobDTO::endDate).toList(), streamed.stream().map(JobDTO::endDate).toList());
+        assertEquals(sorted.stream().map(JobDTO::id).sorted().toList(), streamed.stream().map(JobDTO::id).sorted().toList());
+    }
+
+    //wall clock and heap numbers depend on the machine, run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    public void testStreamingCutsHeapAndTimeToFirstJob() {
+        //warm up both paths, a cold jit would count against whichever runs first
+        heapSorted();
+        try (var jobs = jobService.findAllJobsByCandidateId(CANDIDATE_ID)) {
+            jobs.forEach(job -> { });
+        }
+
+        var baseline = usedHeapAfterGc();
+        var start = System.nanoTime();
+        var sorted = heapSorted();
+        var sortedFirstNanos = System.nanoTime() - start;
+        var sortedHeap = usedHeapAfterGc() - baseline;
+        assertEquals(JOBS, sorted.size());
+        sorted = null;
+
+        baseline = usedHeapAfterGc();
+        var seen = new AtomicInteger();
+        var streamedFirstNanos = new AtomicLong();
+        var streamedHeap = new AtomicLong();
+        start = System.nanoTime();
+        try (var jobs = jobService.findAllJobsByCandidateId(CANDIDATE_ID)) {
+            var streamStart = start;
+            var streamBaseline = baseline;
+            jobs.forEach(job -> {
+                var count = seen.incrementAndGet();
+                if (count == 1) {
+                    streamedFirstNanos.set(System.nanoTime() - streamStart);
+                } else if (count == JOBS / 2) {
+                    //halfway through, only the open cursor batches should be on the heap
+                    streamedHeap.set(usedHeapAfterGc() - streamBaseline);
+                }
+            });
+        }
+        log.info("heap sort first job={}ms retained={}KB streamed first job={}ms retained={}KB",
+                TimeUnit.NANOSECONDS.toMillis(sortedFirstNanos), sortedHeap / 1024,
+                TimeUnit.NANOSECONDS.toMillis(streamedFirstNanos.get()), streamedHeap.get() / 1024);
+
+        assertEquals(JOBS, seen.get());
+        assertTrue(streamedHeap.get() < sortedHeap);
+        assertTrue(streamedFirstNanos.get() < sortedFirstNanos);
+    }
+
+    //what findAllJobsByCandidateId did before, every job loaded then sorted on the heap
+    private List<JobDTO> heapSorted() {
+        return mongoTemplate.find(Query.query(where("candidateId").is(CANDIDATE_ID)), Job.class).stream()
+                .sorted(Comparator.comparing(Job::endDate, Comparator.nullsFirst(Comparator.<LocalDate>reverseOrder())))
+                .map(JobDTO::new)
+                .toList();
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
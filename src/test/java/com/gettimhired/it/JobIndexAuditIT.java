@@ -0,0 +1,38 @@
+package com.gettimhired.it;
+
+import com.gettimhired.config.JobIndexAuditor;
+import com.gettimhired.config.MongoSchemaManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JobIndexAuditIT extends AbstractMongoIT {
+
+    @Autowired
+    private MongoSchemaManager mongoSchemaManager;
+
+    @Autowired
+    private JobIndexAuditor jobIndexAuditor;
+
+    @Test
+    void testHotJobQueriesUseAnIndex() throws InterruptedException {
+        //the indexes are built in the background, wait for the required change sets first
+        var deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline && !incompleteRequiredChangeSets().isEmpty()) {
+            Thread.sleep(100);
+        }
+        //an audit before the indexes exist would report scans for the wrong reason
+        assertEquals(List.of(), incompleteRequiredChangeSets(), "required change sets not completed within 30s");
+
+        assertEquals(List.of(), jobIndexAuditor.audit().collectionScans());
+    }
+
+    private List<MongoSchemaManager.ChangeSetStatus> incompleteRequiredChangeSets() {
+        return mongoSchemaManager.statuses().stream()
+                .filter(status -> status.required() && status.state() != MongoSchemaManager.ChangeSetState.COMPLETED)
+                .toList();
+    }
+}
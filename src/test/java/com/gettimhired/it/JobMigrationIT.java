@@ -0,0 +1,107 @@
+package com.gettimhired.it;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.update.JobUpdateDTO;
+import com.gettimhired.model.mongo.ChangeSet;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.repository.ChangeSetRepository;
+import com.gettimhired.repository.JobRepository;
+import com.gettimhired.service.JobCache;
+import com.gettimhired.service.JobCacheInvalidationBus;
+import com.gettimhired.service.JobMigrationService;
+import com.gettimhired.service.JobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class JobMigrationIT extends AbstractMongoIT {
+
+    private static final String CHANGE_SET_ID = "migration-it";
+    private static final String USER_ID = "MIGRATION_USER";
+    private static final String CANDIDATE_ID = "MIGRATION_CANDIDATE";
+    private static final String EXPORT = "[{\"id\":\"MIGRATION_JOB\",\"userId\":\"" + USER_ID + "\",\"candidateId\":\"" + CANDIDATE_ID + "\"," +
+            "\"companyName\":\"OLD_COMPANY\",\"title\":\"OLD_TITLE\",\"startDate\":\"2020-01-01\",\"currentlyWorking\":true}]";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private ChangeSetRepository changeSetRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JobCache jobCache;
+
+    @Autowired
+    private JobCacheInvalidationBus jobCacheInvalidationBus;
+
+    @Autowired
+    private JobService jobService;
+
+    private JobMigrationService jobMigrationService;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(Query.query(where("candidateId").is(CANDIDATE_ID)), Job.class);
+        changeSetRepository.deleteById(CHANGE_SET_ID);
+        //the export comes from a stub, everything else is the real repository on mongo
+        var builder = RestClient.builder().baseUrl("http://localhost");
+        var server = MockRestServiceServer.bindTo(builder).build();
+        server.expect(ExpectedCount.manyTimes(), requestTo("http://localhost/api/candidates/all/jobs/migrate"))
+                .andRespond(withSuccess(EXPORT, MediaType.APPLICATION_JSON));
+        jobMigrationService = new JobMigrationService(builder.build(), objectMapper, jobRepository, changeSetRepository,
+                mongoTemplate, jobCache, jobCacheInvalidationBus, 500);
+    }
+
+    @Test
+    public void testResumedMigrationKeepsUserEdits() {
+        jobMigrationService.migrateJobs(CHANGE_SET_ID, () -> false);
+        var migrated = jobService.findJobByIdAndUserId("MIGRATION_JOB", USER_ID).orElseThrow();
+        assertEquals(0L, migrated.version());
+        var edit = new JobUpdateDTO("NEW_COMPANY", "NEW_TITLE", migrated.startDate(), migrated.endDate(), List.of("Java"),
+                List.of(), true, null, migrated.version());
+        jobService.updateJob("MIGRATION_JOB", USER_ID, CANDIDATE_ID, edit);
+
+        //no checkpoint was saved, like a crash before it, so the same batch is written again
+        assertFalse(changeSetRepository.findById(CHANGE_SET_ID).map(ChangeSet::getCheckpoint).isPresent());
+        jobMigrationService.migrateJobs(CHANGE_SET_ID, () -> false);
+
+        var stored = jobRepository.findById("MIGRATION_JOB").orElseThrow();
+        assertEquals("NEW_COMPANY", stored.companyName());
+        assertEquals("NEW_TITLE", stored.title());
+        assertEquals(List.of("Java"), stored.skills());
+        assertEquals(1L, stored.version());
+        //the ETag from before the edit must not match again
+        var ex = assertThrows(APIUpdateException.class, () -> jobService.updateJob("MIGRATION_JOB", USER_ID, CANDIDATE_ID, edit));
+        assertEquals(HttpStatus.CONFLICT, ex.getHttpStatus());
+    }
+
+    @Test
+    public void testMigrationEvictsCachedCandidateList() {
+        assertEquals(List.of(), jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID));
+
+        jobMigrationService.migrateJobs(CHANGE_SET_ID, () -> false);
+
+        assertEquals(1, jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID).size());
+    }
+}
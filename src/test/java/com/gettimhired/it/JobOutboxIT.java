@@ -0,0 +1,127 @@
+package com.gettimhired.it;
+
+import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.model.mongo.JobOutboxSequence;
+import com.gettimhired.service.JobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+//a context of its own, with the outbox on every job write runs in a transaction
+@TestPropertySource(properties = "resumejobservice.jobs.outbox.enabled=true")
+class JobOutboxIT extends AbstractMongoIT {
+
+    private static final String USER_ID = "OUTBOX_USER";
+    private static final String CANDIDATE_PREFIX = "OUTBOX_CANDIDATE_";
+    private static final int WRITERS = 16;
+    private static final int WRITES_PER_WRITER = 25;
+
+    Logger log = LoggerFactory.getLogger(JobOutboxIT.class);
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        var candidates = where("candidateId").regex("^" + CANDIDATE_PREFIX);
+        mongoTemplate.remove(Query.query(candidates), Job.class);
+        mongoTemplate.remove(Query.query(candidates), JobOutboxEvent.class);
+        mongoTemplate.remove(Query.query(where("id").regex("^" + CANDIDATE_PREFIX)), JobOutboxSequence.class);
+    }
+
+    @Test
+    public void testConcurrentWritersForDifferentCandidatesAllCommit() throws Exception {
+        var failed = write(writer -> CANDIDATE_PREFIX + writer);
+
+        assertEquals(0, failed);
+        for (int writer = 0; writer < WRITERS; writer++) {
+            //each candidate's events are numbered from one with no gaps
+            var sequences = mongoTemplate.find(Query.query(where("candidateId").is(CANDIDATE_PREFIX + writer)), JobOutboxEvent.class)
+                    .stream()
+                    .map(JobOutboxEvent::sequence)
+                    .sorted()
+                    .toList();
+            assertEquals(LongStream.rangeClosed(1, WRITES_PER_WRITER).boxed().toList(), sequences);
+        }
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance.
+    //Every writer on one candidate is what a single shared counter did to all of them
+    @Test
+    @Tag("performance")
+    public void testPerCandidateSequenceRaisesWriteThroughput() throws Exception {
+        //warm up both paths, a cold jit would count against whichever runs first
+        write(writer -> CANDIDATE_PREFIX + "SHARED");
+        write(writer -> CANDIDATE_PREFIX + writer);
+        init();
+
+        var start = System.nanoTime();
+        var sharedFailed = write(writer -> CANDIDATE_PREFIX + "SHARED");
+        var sharedNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        var perCandidateFailed = write(writer -> CANDIDATE_PREFIX + writer);
+        var perCandidateNanos = System.nanoTime() - start;
+        var writes = (double) WRITERS * WRITES_PER_WRITER;
+        log.info("{} writers one counter writes/s={} failed={} a counter per candidate writes/s={} failed={}", WRITERS,
+                (long) (writes / (sharedNanos / 1e9)), sharedFailed, (long) (writes / (perCandidateNanos / 1e9)), perCandidateFailed);
+
+        assertEquals(0, perCandidateFailed);
+        assertTrue(perCandidateNanos < sharedNanos);
+    }
+
+    //returns how many creates failed, createJob reports a failed transaction as empty
+    private int write(IntFunction<String> candidateForWriter) throws Exception {
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<Integer>>();
+        try (var executor = Executors.newFixedThreadPool(WRITERS)) {
+            for (int w = 0; w < WRITERS; w++) {
+                var candidateId = candidateForWriter.apply(w);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    var failed = 0;
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        if (jobService.createJob(USER_ID, candidateId, job()).isEmpty()) {
+                            failed++;
+                        }
+                    }
+                    return failed;
+                }));
+            }
+            start.countDown();
+            var failed = 0;
+            for (Future<Integer> future : futures) {
+                failed += future.get(60, TimeUnit.SECONDS);
+            }
+            return failed;
+        }
+    }
+
+    private static JobDTO job() {
+        return new JobDTO(null, USER_ID, null, "BARK_NAME", "BARK_TITLE", LocalDate.now(), null,
+                List.of(), List.of(), true, "BARK_LEAVE", null);
+    }
+}
@@ -1,10 +1,19 @@
 package com.gettimhired.it;
 
 import com.gettimhired.config.TestSecurityConfig;
+import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.CandidateJobsDTO;
+import com.gettimhired.model.dto.JobBulkItemDTO;
+import com.gettimhired.model.dto.JobBulkResultDTO;
+import com.gettimhired.model.dto.JobChangeDTO;
 import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.dto.JobPageDTO;
 import com.gettimhired.model.dto.input.JobInputDTO;
+import com.gettimhired.model.dto.update.JobPatchDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
+import com.gettimhired.resolver.JobErrorType;
 import com.gettimhired.resolver.JobResolver;
+import com.gettimhired.service.JobChangePublisher;
 import com.gettimhired.service.JobService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,13 +25,21 @@ import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureG
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.test.context.support.WithMockUser;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -32,9 +49,17 @@ import static org.mockito.Mockito.*;
 @Import(TestSecurityConfig.class)
 class JobResolverIT {
 
+    private static final Set<String> ALL_FIELDS = Set.of(
+            "id", "userId", "candidateId", "companyName", "title", "startDate", "endDate",
+            "skills", "achievements", "currentlyWorking", "reasonForLeaving"
+    );
+
     @MockBean
     private JobService jobService;
 
+    @MockBean
+    private JobChangePublisher jobChangePublisher;
+
     @Mock
     private UserDetails userDetails;
 
@@ -51,7 +76,7 @@ class JobResolverIT {
     void testGetJobs() {
         String candidateId = "1";
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.findAllJobsForUserAndCandidateId("user1", candidateId)).thenReturn(Collections.emptyList());
+        when(jobService.findAllJobsForUserAndCandidateId("user1", candidateId, ALL_FIELDS)).thenReturn(Collections.emptyList());
 
         graphQlTester.document("""
                           query {
@@ -75,16 +100,100 @@ class JobResolverIT {
                 .entityList(JobDTO.class)
                 .hasSize(0);
 
-        verify(jobService, times(1)).findAllJobsForUserAndCandidateId("user1", candidateId);
+        verify(jobService, times(1)).findAllJobsForUserAndCandidateId("user1", candidateId, ALL_FIELDS);
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testGetJobs_NarrowSelection() {
+        String candidateId = "1";
+        when(jobService.findAllJobsForUserAndCandidateId("user1", candidateId, Set.of("companyName", "title"))).thenReturn(Collections.emptyList());
+
+        graphQlTester.document("""
+                          query {
+                              getJobs(candidateId: "1") {
+                                companyName
+                                title
+                              }
+                            }
+                        """)
+                .execute()
+                .path("getJobs")
+                .entityList(JobDTO.class)
+                .hasSize(0);
+
+        verify(jobService, times(1)).findAllJobsForUserAndCandidateId("user1", candidateId, Set.of("companyName", "title"));
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testGetJobsForCandidates() {
+        JobDTO jobDTO = new JobDTO("1", "user1", "1", "Company", "Title", LocalDate.parse("2021-01-01"), null, null, null, true, "Leaving", null);
+        when(jobService.findAllJobsForUserAndCandidateIds("user1", List.of("1", "2")))
+                .thenReturn(List.of(new CandidateJobsDTO("1", List.of(jobDTO)), new CandidateJobsDTO("2", List.of())));
+
+        graphQlTester.document("""
+                          query {
+                              getJobsForCandidates(candidateIds: ["1", "2"]) {
+                                candidateId
+                                jobs {
+                                  id
+                                  companyName
+                                }
+                              }
+                            }
+                        """)
+                .execute()
+                .path("getJobsForCandidates[0].candidateId").entity(String.class).isEqualTo("1")
+                .path("getJobsForCandidates[0].jobs[0].companyName").entity(String.class).isEqualTo("Company")
+                .path("getJobsForCandidates[1].candidateId").entity(String.class).isEqualTo("2")
+                .path("getJobsForCandidates[1].jobs").entityList(JobDTO.class).hasSize(0);
+
+        verify(jobService, times(1)).findAllJobsForUserAndCandidateIds("user1", List.of("1", "2"));
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testGetJobsConnection() {
+        JobDTO jobDTO = new JobDTO("1", "user1", "1", "Company", "Title", LocalDate.parse("2021-01-01"), null, null, null, true, "Leaving", null);
+        when(jobService.findJobPageForUserAndCandidateId("user1", "1", 1, null)).thenReturn(new JobPageDTO(List.of(jobDTO), "CURSOR_1"));
+        when(jobService.encodeCursor(jobDTO)).thenReturn("CURSOR_1");
+
+        graphQlTester.document("""
+                          query {
+                              getJobsConnection(candidateId: "1", first: 1) {
+                                edges {
+                                  cursor
+                                  node {
+                                    id
+                                    companyName
+                                  }
+                                }
+                                pageInfo {
+                                  hasNextPage
+                                  hasPreviousPage
+                                  endCursor
+                                }
+                              }
+                            }
+                        """)
+                .execute()
+                .path("getJobsConnection.edges[0].cursor").entity(String.class).isEqualTo("CURSOR_1")
+                .path("getJobsConnection.edges[0].node.companyName").entity(String.class).isEqualTo("Company")
+                .path("getJobsConnection.pageInfo.hasNextPage").entity(Boolean.class).isEqualTo(true)
+                .path("getJobsConnection.pageInfo.hasPreviousPage").entity(Boolean.class).isEqualTo(false)
+                .path("getJobsConnection.pageInfo.endCursor").entity(String.class).isEqualTo("CURSOR_1");
+
+        verify(jobService, times(1)).findJobPageForUserAndCandidateId("user1", "1", 1, null);
     }
 
     @Test
     @WithMockUser(username = "user1")
     void testGetJobById_Found() {
         String jobId = "1";
-        JobDTO jobDTO = new JobDTO(jobId, "user1", "", "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null, null,true, "Leaving");
+        JobDTO jobDTO = new JobDTO(jobId, "user1", "", "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null, null,true, "Leaving", null);
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.findJobByIdAndUserId(jobId, "user1")).thenReturn(Optional.of(jobDTO));
+        when(jobService.findJobsByIdsAndUserId(Set.of(jobId), "user1", ALL_FIELDS)).thenReturn(Map.of(jobId, jobDTO));
 
         graphQlTester.document("""
                         query {
@@ -108,7 +217,7 @@ class JobResolverIT {
                 .entity(JobDTO.class)
                 .isEqualTo(jobDTO);
 
-        verify(jobService, times(1)).findJobByIdAndUserId(jobId, "user1");
+        verify(jobService, times(1)).findJobsByIdsAndUserId(Set.of(jobId), "user1", ALL_FIELDS);
     }
 
     @Test
@@ -116,7 +225,7 @@ class JobResolverIT {
     void testGetJobById_NotFound() {
         String jobId = "1";
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.findJobByIdAndUserId(jobId, "user1")).thenReturn(Optional.empty());
+        when(jobService.findJobsByIdsAndUserId(Set.of(jobId), "user1", ALL_FIELDS)).thenReturn(Map.of());
 
         graphQlTester.document("""
                         query {
@@ -139,14 +248,92 @@ class JobResolverIT {
                 .path("getJobById")
                 .valueIsNull();
 
-        verify(jobService, times(1)).findJobByIdAndUserId(jobId, "user1");
+        verify(jobService, times(1)).findJobsByIdsAndUserId(Set.of(jobId), "user1", ALL_FIELDS);
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testGetJobById_AliasedLookupsAreBatched() {
+        JobDTO first = new JobDTO("1", "user1", "", "Company", "Title", LocalDate.parse("2021-01-01"), null, null, null, true, "Leaving", null);
+        JobDTO second = new JobDTO("2", "user1", "", "Company", "Title", LocalDate.parse("2021-01-01"), null, null, null, true, "Leaving", null);
+        when(jobService.findJobsByIdsAndUserId(Set.of("1", "2", "3"), "user1", Set.of("id", "title")))
+                .thenReturn(Map.of("1", first, "2", second));
+
+        var response = graphQlTester.document("""
+                        query {
+                           a: getJobById(id: "1") { id title }
+                           b: getJobById(id: "2") { id }
+                           c: getJobById(id: "3") { id }
+                           d: getJobById(id: "1") { id title }
+                         }
+                        """)
+                .execute();
+
+        response.path("a.title").entity(String.class).isEqualTo("Title");
+        response.path("b.id").entity(String.class).isEqualTo("2");
+        response.path("c").valueIsNull();
+        response.path("d.id").entity(String.class).isEqualTo("1");
+        //one round trip for the whole query
+        verify(jobService, times(1)).findJobsByIdsAndUserId(anyCollection(), anyString(), anyCollection());
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testCreateJobs() {
+        JobDTO jobDTO = new JobDTO("1", "user1", "2", "Company", "Title", LocalDate.parse("2021-01-01"), null, null, null, true, "Leaving", 0L);
+        when(jobService.createJobs(eq("user1"), eq("2"), anyList())).thenReturn(new JobBulkResultDTO(1, 1, List.of(
+                new JobBulkItemDTO(0, true, jobDTO, List.of()),
+                new JobBulkItemDTO(1, false, null, List.of("title must not be blank"))
+        )));
+
+        graphQlTester.document("""
+                          mutation {
+                              createJobs(candidateId: "2", jobs: [
+                                { candidateId: "2", companyName: "Company", title: "Title", startDate: "2021-01-01", currentlyWorking: true, reasonForLeaving: "Leaving" },
+                                { candidateId: "2", companyName: "Company", startDate: "2021-01-01", currentlyWorking: true, reasonForLeaving: "Leaving" }
+                              ]) {
+                                created
+                                failed
+                                items { index created job { id } errors }
+                              }
+                            }
+                        """)
+                .execute()
+                .path("createJobs.created").entity(Integer.class).isEqualTo(1)
+                .path("createJobs.items[0].job.id").entity(String.class).isEqualTo("1")
+                .path("createJobs.items[1].errors[0]").entity(String.class).isEqualTo("title must not be blank");
+
+        verify(jobService, times(1)).createJobs(eq("user1"), eq("2"), argThat(jobs -> jobs.size() == 2));
+    }
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testPatchJob() {
+        JobDTO jobDTO = new JobDTO("1", "user1", "2", "Company", "New Title", LocalDate.parse("2021-01-01"), null, List.of("Kotlin"), null, true, "Leaving", null);
+        var patch = new JobPatchDTO(null, "New Title", null, null, null, null, null, List.of("Kotlin"), null, null, null, null);
+        when(jobService.patchJob("1", "user1", "2", patch, null)).thenReturn(Optional.of(jobDTO));
+
+        graphQlTester.document("""
+                          mutation {
+                              patchJob(id: "1", candidateId: "2", patch: { title: "New Title", addSkills: ["Kotlin"] }) {
+                                id
+                                title
+                                skills
+                              }
+                            }
+                        """)
+                .execute()
+                .path("patchJob.title").entity(String.class).isEqualTo("New Title")
+                .path("patchJob.skills[0]").entity(String.class).isEqualTo("Kotlin");
+
+        verify(jobService, times(1)).patchJob("1", "user1", "2", patch, null);
     }
 
     @Test
     @WithMockUser(username = "user1")
     void testCreateJob_Success() {
         String candidateId = "1";
-        JobDTO jobDTO = new JobDTO("", "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null, null,true, "Leaving");
+        JobDTO jobDTO = new JobDTO("", "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null, null,true, "Leaving", null);
         when(userDetails.getUsername()).thenReturn("user1");
         when(jobService.createJob(eq("user1"), eq(candidateId), any(JobDTO.class))).thenReturn(Optional.of(jobDTO));
 
@@ -188,7 +375,7 @@ class JobResolverIT {
     @WithMockUser(username = "user1")
     void testCreateJob_Failure() {
         String candidateId = "1";
-        JobInputDTO jobInput = new JobInputDTO("", "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null,null,true, "Leaving");
+        JobInputDTO jobInput = new JobInputDTO("", "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null,null,true, "Leaving", null);
         when(userDetails.getUsername()).thenReturn("user1");
         when(jobService.createJob(eq("user1"), eq(candidateId), any(JobDTO.class))).thenReturn(Optional.empty());
 
@@ -231,8 +418,8 @@ class JobResolverIT {
     void testUpdateJob_Success() {
         String candidateId = "1";
         String jobId = "1";
-        JobInputDTO jobInput = new JobInputDTO(jobId, "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null,null,true, "Leaving");
-        JobDTO jobDTO = new JobDTO(jobId, "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null, null,true, "Leaving");
+        JobInputDTO jobInput = new JobInputDTO(jobId, "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null,null,true, "Leaving", null);
+        JobDTO jobDTO = new JobDTO(jobId, "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null, null,true, "Leaving", null);
         when(userDetails.getUsername()).thenReturn("user1");
         when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class))).thenReturn(Optional.of(jobDTO));
 
@@ -274,12 +461,44 @@ class JobResolverIT {
         verify(jobService, times(1)).updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class));
     }
 
+    @Test
+    @WithMockUser(username = "user1")
+    void testUpdateJob_VersionConflictIsTypedError() {
+        when(jobService.updateJob(eq("1"), eq("user1"), eq("1"), any(JobUpdateDTO.class)))
+                .thenThrow(new APIUpdateException(HttpStatus.CONFLICT));
+
+        graphQlTester.document("""
+                        mutation {
+                           updateJob(job: {
+                             id:"1",
+                             candidateId:"1",
+                             companyName: "BARK",
+                             title: "BARK",
+                             startDate: "2023-09-01",
+                             currentlyWorking: false,
+                             reasonForLeaving: "BARK",
+                             version: 3
+                         }) {
+                             id
+                             version
+                           }
+                         }
+                        """)
+                .execute()
+                .errors()
+                .expect(error -> error.getErrorType() == JobErrorType.VERSION_CONFLICT)
+                .verify()
+                .path("updateJob").valueIsNull();
+
+        verify(jobService, times(1)).updateJob(eq("1"), eq("user1"), eq("1"), argThat(update -> update.version() == 3L));
+    }
+
     @Test
     @WithMockUser(username = "user1")
     void testUpdateJob_Failure() {
         String candidateId = "1";
         String jobId = "1";
-        JobInputDTO jobInput = new JobInputDTO(jobId, "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null,null,true, "Leaving");
+        JobInputDTO jobInput = new JobInputDTO(jobId, "user1", candidateId, "Updated Title", "Updated Company", LocalDate.parse("2021-01-01"), LocalDate.parse("2022-01-01"), null,null,true, "Leaving", null);
         when(userDetails.getUsername()).thenReturn("user1");
         when(jobService.updateJob(eq(jobId), eq("user1"), eq(candidateId), any(JobUpdateDTO.class))).thenReturn(Optional.empty());
 
@@ -356,4 +575,37 @@ class JobResolverIT {
 
         verify(jobService, times(1)).deleteJob(eq(jobId), eq("user1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "user1")
+    void testJobChangedSubscription() {
+        var job = new JobDTO("1", "user1", "candidate1", "Company", "Title", LocalDate.parse("2020-01-01"), null, List.of(), List.of(), true, "reason", 3L);
+        when(jobChangePublisher.changes("user1", "candidate1")).thenReturn(Flux.just(
+                new JobChangeDTO("UPDATE", "1", "user1", "candidate1", job),
+                new JobChangeDTO("DELETE", "2", "user1", "candidate1", null)
+        ));
+
+        var changes = graphQlTester.document("""
+                          subscription {
+                              jobChanged(candidateId: "candidate1") {
+                                operation
+                                id
+                                job {
+                                  title
+                                  version
+                                }
+                              }
+                            }
+                        """)
+                .executeSubscription()
+                .toFlux("jobChanged", Map.class);
+
+        var received = changes.collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(2, received.size());
+        assertEquals("UPDATE", received.get(0).get("operation"));
+        assertEquals(Map.of("title", "Title", "version", 3), received.get(0).get("job"));
+        assertEquals("DELETE", received.get(1).get("operation"));
+        assertNull(received.get(1).get("job"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.gettimhired.it;
+
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.service.JobCache;
+import com.gettimhired.service.JobService;
+import com.gettimhired.service.TokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+class JobStreamingIT extends AbstractMongoIT {
+
+    private static final String USER_ID = "STREAM_USER";
+    private static final String CANDIDATE_ID = "STREAM_CANDIDATE";
+    private static final int JOBS = 20_000;
+
+    Logger log = LoggerFactory.getLogger(JobStreamingIT.class);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private JobCache jobCache;
+
+    @Autowired
+    private TokenService tokenService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(Query.query(where("candidateId").is(CANDIDATE_ID)), Job.class);
+        jobCache.invalidate(USER_ID, CANDIDATE_ID);
+        //about a kilobyte of skills and achievements each
+        var lines = IntStream.range(0, 10).mapToObj(i -> "Led the BARK migration of service " + i + " to the new platform").toList();
+        var jobs = new ArrayList<Job>();
+        for (int i = 0; i < JOBS; i++) {
+            jobs.add(new Job(UUID.randomUUID().toString(), USER_ID, CANDIDATE_ID, "BARK_NAME_" + i, "BARK_TITLE",
+                    LocalDate.of(2020, 1, 1), null, lines, lines, true, null, 0L));
+        }
+        mongoTemplate.insertAll(jobs);
+    }
+
+    @Test
+    public void testNdjsonStreamsEveryJob() throws Exception {
+        var response = get(MediaType.APPLICATION_NDJSON_VALUE);
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith(MediaType.APPLICATION_NDJSON_VALUE));
+        try (var reader = reader(response.body())) {
+            assertEquals(JOBS, reader.lines().filter(line -> !line.isBlank()).count());
+        }
+    }
+
+    //wall clock and heap numbers depend on the machine, run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    public void testNdjsonCutsTimeToFirstByteAndHeap() throws Exception {
+        //warm up both paths, a cold jit would count against whichever runs first
+        drain(get(MediaType.APPLICATION_JSON_VALUE).body());
+        drain(get(MediaType.APPLICATION_NDJSON_VALUE).body());
+
+        //the list endpoint builds and holds the whole List<JobDTO>, measure that directly
+        jobCache.invalidate(USER_ID, CANDIDATE_ID);
+        var baseline = usedHeapAfterGc();
+        var list = jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        var listHeap = usedHeapAfterGc() - baseline;
+        assertEquals(JOBS, list.size());
+        list = null;
+        jobCache.invalidate(USER_ID, CANDIDATE_ID);
+
+        var start = System.nanoTime();
+        var json = get(MediaType.APPLICATION_JSON_VALUE).body();
+        assertNotEquals(-1, json.read());
+        var jsonFirstByteNanos = System.nanoTime() - start;
+        drain(json);
+
+        baseline = usedHeapAfterGc();
+        start = System.nanoTime();
+        var ndjson = get(MediaType.APPLICATION_NDJSON_VALUE).body();
+        var reader = reader(ndjson);
+        assertNotNull(reader.readLine());
+        var ndjsonFirstLineNanos = System.nanoTime() - start;
+        //stop reading, the server blocks on a full socket partway through the cursor
+        Thread.sleep(500);
+        var streamingHeap = usedHeapAfterGc() - baseline;
+        drain(ndjson);
+        log.info("json first byte={}ms list retained={}KB ndjson first line={}ms streaming retained={}KB",
+                TimeUnit.NANOSECONDS.toMillis(jsonFirstByteNanos), listHeap / 1024,
+                TimeUnit.NANOSECONDS.toMillis(ndjsonFirstLineNanos), streamingHeap / 1024);
+
+        assertTrue(ndjsonFirstLineNanos < jsonFirstByteNanos);
+        assertTrue(streamingHeap < listHeap / 2);
+    }
+
+    private HttpResponse<InputStream> get(String accept) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/candidates/" + CANDIDATE_ID + "/jobs?userId=" + USER_ID))
+                .header("Accept", accept)
+                .header("Authorization", "Bearer " + tokenService.issueToken(USER_ID).token())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static BufferedReader reader(InputStream body) {
+        return new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    private static void drain(InputStream body) throws Exception {
+        try (body) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
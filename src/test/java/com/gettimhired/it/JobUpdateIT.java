@@ -0,0 +1,157 @@
+package com.gettimhired.it;
+
+import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.update.JobUpdateDTO;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.repository.JobRepository;
+import com.gettimhired.service.JobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+class JobUpdateIT extends AbstractMongoIT {
+
+    private static final String USER_ID = "UPDATE_USER";
+    private static final String CANDIDATE_ID = "UPDATE_CANDIDATE";
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 200;
+
+    Logger log = LoggerFactory.getLogger(JobUpdateIT.class);
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate.remove(Query.query(where("candidateId").is(CANDIDATE_ID)), Job.class);
+        var jobs = new ArrayList<Job>();
+        for (int t = 0; t < THREADS; t++) {
+            jobs.add(job("UPDATE_JOB_" + t));
+        }
+        mongoTemplate.insertAll(jobs);
+    }
+
+    @Test
+    public void testConcurrentUpdatesLoseNothingWhenConflictsAreRetried() throws Exception {
+        var id = "UPDATE_JOB_0";
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<?>>();
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int t = 0; t < THREADS; t++) {
+                var thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < UPDATES_PER_THREAD / 10; i++) {
+                        var skill = "SKILL_" + thread + "_" + i;
+                        //read, modify, compare-and-set, and on a conflict read again
+                        while (true) {
+                            var current = jobService.findJobByIdAndUserId(id, USER_ID).orElseThrow();
+                            var skills = new ArrayList<>(current.skills());
+                            skills.add(skill);
+                            var update = new JobUpdateDTO(current.companyName(), current.title(), current.startDate(), current.endDate(),
+                                    skills, current.achievements(), current.currentlyWorking(), current.reasonForLeaving(), current.version());
+                            try {
+                                jobService.updateJob(id, USER_ID, CANDIDATE_ID, update);
+                                break;
+                            } catch (APIUpdateException e) {
+                                assertEquals(HttpStatus.CONFLICT, e.getHttpStatus());
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+
+        var total = THREADS * (UPDATES_PER_THREAD / 10);
+        var stored = jobRepository.findById(id).orElseThrow();
+        assertEquals(total, stored.skills().size());
+        assertEquals(total, stored.skills().stream().distinct().count());
+        assertEquals(total, stored.version());
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance.
+    //Each thread updates its own job, so this is the cost of the round trips without conflicts
+    @Test
+    @Tag("performance")
+    public void testFindAndModifyCutsUpdateLatency() throws Exception {
+        //what updateJob did before, read the job, check the owner in java and save it whole
+        Consumer<String> readThenSave = id -> {
+            var current = jobRepository.findById(id).orElseThrow();
+            assertEquals(USER_ID, current.userId());
+            jobRepository.save(new Job(current.id(), current.userId(), current.candidateId(), current.companyName(), "NEW_TITLE",
+                    current.startDate(), current.endDate(), current.skills(), current.achievements(), current.currentlyWorking(),
+                    current.reasonForLeaving(), current.currentVersion() + 1));
+        };
+        Consumer<String> findAndModify = id -> assertTrue(jobRepository
+                .updateByIdAndUserIdAndCandidateId(id, USER_ID, CANDIDATE_ID, null, new Update().set("title", "NEW_TITLE"))
+                .isPresent());
+
+        //warm up both paths, a cold jit would count against whichever runs first
+        meanMicros(readThenSave, UPDATES_PER_THREAD / 10);
+        meanMicros(findAndModify, UPDATES_PER_THREAD / 10);
+        var readThenSaveMicros = meanMicros(readThenSave, UPDATES_PER_THREAD);
+        var findAndModifyMicros = meanMicros(findAndModify, UPDATES_PER_THREAD);
+        log.info("{} threads read then save mean={}us findAndModify mean={}us", THREADS, readThenSaveMicros, findAndModifyMicros);
+
+        assertTrue(findAndModifyMicros < readThenSaveMicros);
+    }
+
+    private static long meanMicros(Consumer<String> update, int updatesPerThread) throws Exception {
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<Long>>();
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int t = 0; t < THREADS; t++) {
+                var id = "UPDATE_JOB_" + t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    var began = System.nanoTime();
+                    for (int i = 0; i < updatesPerThread; i++) {
+                        update.accept(id);
+                    }
+                    return System.nanoTime() - began;
+                }));
+            }
+            start.countDown();
+            var totalNanos = 0L;
+            for (Future<Long> future : futures) {
+                totalNanos += future.get(60, TimeUnit.SECONDS);
+            }
+            return TimeUnit.NANOSECONDS.toMicros(totalNanos / ((long) THREADS * updatesPerThread));
+        }
+    }
+
+    private static Job job(String id) {
+        return new Job(id, USER_ID, CANDIDATE_ID, "BARK_NAME", "BARK_TITLE", LocalDate.now(), null,
+                List.of(), List.of(), true, "BARK_LEAVE", 0L);
+    }
+}
@@ -0,0 +1,38 @@
+package com.gettimhired.model.dto.update;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobPatchDTOTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    public void testPatchWithOnlyNullFieldsIsValid() {
+        var patch = new JobPatchDTO(null, null, null, null, null, null, null, null, null, null, null, null);
+
+        assertTrue(validator.validate(patch).isEmpty());
+    }
+
+    @Test
+    public void testPatchWithWhitespaceOnlyValuesIsInvalid() {
+        var patch = new JobPatchDTO(" ", "\t", null, null, null, null, "\n", null, null, null, null, null);
+
+        var messages = validator.validate(patch).stream().map(violation -> violation.getMessage()).toList();
+
+        assertEquals(3, messages.size());
+        assertTrue(messages.contains("Company name cannot be blank"));
+        assertTrue(messages.contains("Title cannot be blank"));
+        assertTrue(messages.contains("Reason for leaving cannot be blank"));
+    }
+
+    @Test
+    public void testPatchWithTextAroundLineBreaksIsValid() {
+        var patch = new JobPatchDTO(" BARK_NAME ", "BARK_TITLE", null, null, null, null, "BARK\nLEAVE", null, null, null, null, null);
+
+        assertTrue(validator.validate(patch).isEmpty());
+    }
+}
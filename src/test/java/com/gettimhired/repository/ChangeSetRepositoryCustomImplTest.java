@@ -0,0 +1,74 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.ChangeSet;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChangeSetRepositoryCustomImplTest {
+
+    private ChangeSetRepositoryCustomImpl changeSetRepositoryCustom;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate = mock(MongoTemplate.class);
+        changeSetRepositoryCustom = new ChangeSetRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @Test
+    public void testClaimUpsertsWithLease() {
+        var changeSet = new ChangeSet();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ChangeSet.class))).thenReturn(changeSet);
+
+        var result = changeSetRepositoryCustom.claim("changeset-001", "tim.schimandle", "index", "NODE", Duration.ofMinutes(2));
+
+        assertTrue(result.isPresent());
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        var optionsCaptor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(1)).findAndModify(queryCaptor.capture(), updateCaptor.capture(), optionsCaptor.capture(), eq(ChangeSet.class));
+        var and = queryCaptor.getValue().getQueryObject().getList("$and", Document.class);
+        assertEquals(new Document("id", "changeset-001"), and.get(0));
+        assertEquals(new Document("isCompleted", new Document("$ne", true)), and.get(1));
+        var set = updateCaptor.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals("NODE", set.get("lockOwner"));
+        assertTrue(optionsCaptor.getValue().isUpsert());
+        assertTrue(optionsCaptor.getValue().isReturnNew());
+    }
+
+    @Test
+    public void testClaimHeldElsewhereReturnsEmpty() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ChangeSet.class)))
+                .thenThrow(new DuplicateKeyException("duplicate key"));
+
+        var result = changeSetRepositoryCustom.claim("changeset-001", "tim.schimandle", "index", "NODE", Duration.ofMinutes(2));
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testRenewOnlyForOwner() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ChangeSet.class))).thenReturn(UpdateResult.acknowledged(0L, 0L, null));
+
+        assertFalse(changeSetRepositoryCustom.renew("changeset-001", "NODE", Duration.ofMinutes(2)));
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).updateFirst(queryCaptor.capture(), any(Update.class), eq(ChangeSet.class));
+        assertEquals(new Document("id", "changeset-001").append("lockOwner", "NODE"), queryCaptor.getValue().getQueryObject());
+    }
+}
@@ -0,0 +1,86 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.model.mongo.JobOutboxLease;
+import com.gettimhired.model.mongo.JobOutboxSequence;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JobOutboxRepositoryCustomImplTest {
+
+    private JobOutboxRepositoryCustomImpl jobOutboxRepositoryCustom;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate = mock(MongoTemplate.class);
+        jobOutboxRepositoryCustom = new JobOutboxRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @Test
+    public void testFindPendingIsOldestFirstPerCandidate() {
+        when(mongoTemplate.find(any(Query.class), eq(JobOutboxEvent.class))).thenReturn(List.of());
+
+        jobOutboxRepositoryCustom.findPending(50);
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(queryCaptor.capture(), eq(JobOutboxEvent.class));
+        assertEquals(new Document("publishedAt", null), queryCaptor.getValue().getQueryObject());
+        assertEquals(new Document("candidateId", 1).append("sequence", 1).append("id", 1), queryCaptor.getValue().getSortObject());
+        assertEquals(50, queryCaptor.getValue().getLimit());
+    }
+
+    @Test
+    public void testAllocateSequenceReturnsTheFirstOfTheRange() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobOutboxSequence.class)))
+                .thenReturn(new JobOutboxSequence("CANDIDATE", 12L));
+
+        var first = jobOutboxRepositoryCustom.allocateSequence("CANDIDATE", 3);
+
+        assertEquals(10L, first);
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        var optionsCaptor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(1)).findAndModify(queryCaptor.capture(), updateCaptor.capture(), optionsCaptor.capture(), eq(JobOutboxSequence.class));
+        //each candidate counts on its own document
+        assertEquals(new Document("id", "CANDIDATE"), queryCaptor.getValue().getQueryObject());
+        assertEquals(3, updateCaptor.getValue().getUpdateObject().get("$inc", Document.class).get("value"));
+        assertTrue(optionsCaptor.getValue().isUpsert());
+        assertTrue(optionsCaptor.getValue().isReturnNew());
+    }
+
+    @Test
+    public void testClaimRelayUpsertsLease() {
+        var result = jobOutboxRepositoryCustom.claimRelay("NODE", Duration.ofSeconds(30));
+
+        assertTrue(result);
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        var optionsCaptor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), updateCaptor.capture(), optionsCaptor.capture(), eq(JobOutboxLease.class));
+        assertEquals("NODE", updateCaptor.getValue().getUpdateObject().get("$set", Document.class).get("owner"));
+        assertTrue(optionsCaptor.getValue().isUpsert());
+    }
+
+    @Test
+    public void testClaimRelayHeldElsewhereIsFalse() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobOutboxLease.class)))
+                .thenThrow(new DuplicateKeyException("duplicate key"));
+
+        assertFalse(jobOutboxRepositoryCustom.claimRelay("NODE", Duration.ofSeconds(30)));
+    }
+}
@@ -0,0 +1,262 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.Job;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.gettimhired.TestHelper.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JobRepositoryCustomImplTest {
+
+    private static final int DECODES = 20_000;
+
+    Logger log = LoggerFactory.getLogger(JobRepositoryCustomImplTest.class);
+
+    private JobRepositoryCustomImpl jobRepositoryCustom;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate = mock(MongoTemplate.class);
+        jobRepositoryCustom = new JobRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @Test
+    public void testFindAllProjectsSelectedFields() {
+        when(mongoTemplate.find(any(Query.class), eq(Job.class))).thenReturn(List.of());
+
+        jobRepositoryCustom.findAllByUserIdAndCandidateIdProjected(USER_ID, CANDIDATE_ID, List.of("companyName", "title", "__typename"));
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(queryCaptor.capture(), eq(Job.class));
+        var query = queryCaptor.getValue();
+        assertEquals(new Document("companyName", 1).append("title", 1).append("id", 1), query.getFieldsObject());
+        assertEquals(new Document("userId", USER_ID).append("candidateId", CANDIDATE_ID), query.getQueryObject());
+    }
+
+    @Test
+    public void testFindByIdsAlwaysIncludesId() {
+        when(mongoTemplate.find(any(Query.class), eq(Job.class))).thenReturn(List.of());
+
+        var result = jobRepositoryCustom.findAllByIdInAndUserIdProjected(List.of(ID, "BARK_ID_TWO"), USER_ID, List.of());
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(queryCaptor.capture(), eq(Job.class));
+        var query = queryCaptor.getValue();
+        assertEquals(new Document("id", 1), query.getFieldsObject());
+        assertEquals(new Document("id", new Document("$in", List.of(ID, "BARK_ID_TWO"))).append("userId", USER_ID), query.getQueryObject());
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testUpdateFiltersOnOwnerAndVersionAndIncrementsVersion() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Job.class))).thenReturn(null);
+
+        var result = jobRepositoryCustom.updateByIdAndUserIdAndCandidateId(ID, USER_ID, CANDIDATE_ID, 3L, new Update().set("title", "BARK_TITLE"));
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        var optionsCaptor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(1)).findAndModify(queryCaptor.capture(), updateCaptor.capture(), optionsCaptor.capture(), eq(Job.class));
+        assertEquals(new Document("id", ID).append("userId", USER_ID).append("candidateId", CANDIDATE_ID).append("version", 3L), queryCaptor.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("title", "BARK_TITLE")).append("$inc", new Document("version", 1L)), updateCaptor.getValue().getUpdateObject());
+        assertTrue(optionsCaptor.getValue().isReturnNew());
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testUpdateVersionZeroMatchesUnversionedDocuments() {
+        jobRepositoryCustom.updateByIdAndUserIdAndCandidateId(ID, USER_ID, CANDIDATE_ID, 0L, new Update());
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).findAndModify(queryCaptor.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Job.class));
+        assertEquals(new Document("$in", Arrays.asList(0L, null)), queryCaptor.getValue().getQueryObject().get("version"));
+    }
+
+    @Test
+    public void testInsertAllUnorderedReturnsFailuresByIndex() {
+        var bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Job.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                null,
+                new ServerAddress(),
+                Set.of())));
+
+        var result = jobRepositoryCustom.insertAllUnordered(List.of());
+
+        assertEquals(Map.of(1, "duplicate key"), result);
+    }
+
+    @Test
+    public void testInsertAllIfAbsentOnlySetsFieldsOnInsert() {
+        var bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Job.class)).thenReturn(bulkOperations);
+        when(mongoTemplate.getConverter()).thenReturn(converter());
+        var existing = new Job(ID, USER_ID, CANDIDATE_ID, "BARK_NAME", null, null, null, List.of(), List.of(), null, null, 0L);
+        var missing = new Job("BARK_NEW_ID", USER_ID, CANDIDATE_ID, "BARK_NEW_NAME", null, null, null, List.of(), List.of(), null, null, 0L);
+        //only the second job was missing and got inserted
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 0,
+                List.of(new BulkWriteUpsert(1, new BsonString(missing.id()))), List.of()));
+
+        var inserted = jobRepositoryCustom.insertAllIfAbsent(List.of(existing, missing));
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).upsert(queryCaptor.capture(), updateCaptor.capture());
+        verify(bulkOperations, never()).replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class));
+        assertEquals(new Document("id", ID), queryCaptor.getAllValues().get(0).getQueryObject());
+        var updateObject = updateCaptor.getAllValues().get(0).getUpdateObject();
+        //nothing outside $setOnInsert, an existing job keeps its edits and version
+        assertEquals(Set.of("$setOnInsert"), updateObject.keySet());
+        var setOnInsert = updateObject.get("$setOnInsert", Document.class);
+        assertEquals("BARK_NAME", setOnInsert.get("companyName"));
+        assertEquals(0L, setOnInsert.get("version"));
+        assertFalse(setOnInsert.containsKey("_id"));
+        assertEquals(List.of(missing), inserted);
+    }
+
+    @Test
+    public void testFindPageFirstPageSortsByStartDateThenId() {
+        when(mongoTemplate.find(any(Query.class), eq(Job.class))).thenReturn(List.of());
+
+        jobRepositoryCustom.findPageByUserIdAndCandidateId(USER_ID, CANDIDATE_ID, null, null, 11);
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(queryCaptor.capture(), eq(Job.class));
+        var query = queryCaptor.getValue();
+        assertEquals(new Document("userId", USER_ID).append("candidateId", CANDIDATE_ID), query.getQueryObject());
+        assertEquals(new Document("startDate", -1).append("id", 1), query.getSortObject());
+        assertEquals(11, query.getLimit());
+    }
+
+    @Test
+    public void testFindPageSeeksPastCursor() {
+        when(mongoTemplate.find(any(Query.class), eq(Job.class))).thenReturn(List.of());
+        var startDate = LocalDate.of(2020, 1, 1);
+
+        jobRepositoryCustom.findPageByUserIdAndCandidateId(USER_ID, CANDIDATE_ID, startDate, ID, 11);
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(queryCaptor.capture(), eq(Job.class));
+        var query = queryCaptor.getValue();
+        assertEquals(new Document("userId", USER_ID).append("candidateId", CANDIDATE_ID).append("$or", List.of(
+                new Document("startDate", new Document("$lt", startDate)),
+                new Document("startDate", startDate).append("id", new Document("$gt", ID)),
+                new Document("startDate", null)
+        )), query.getQueryObject());
+        assertEquals(new Document("startDate", -1).append("id", 1), query.getSortObject());
+        assertEquals(11, query.getLimit());
+    }
+
+    @Test
+    public void testFindPageSeeksPastCursorWithoutStartDate() {
+        when(mongoTemplate.find(any(Query.class), eq(Job.class))).thenReturn(List.of());
+
+        jobRepositoryCustom.findPageByUserIdAndCandidateId(USER_ID, CANDIDATE_ID, null, ID, 11);
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(queryCaptor.capture(), eq(Job.class));
+        //jobs without a startDate come last, only later ids among them are left
+        assertEquals(new Document("userId", USER_ID).append("candidateId", CANDIDATE_ID)
+                .append("startDate", null).append("id", new Document("$gt", ID)), queryCaptor.getValue().getQueryObject());
+    }
+
+    //wall clock numbers depend on the machine, run with mvn test -Pperformance.
+    //No mongo here, so this measures the two costs a projection saves on the client side:
+    //the bytes on the wire and decoding them into a Job
+    @Test
+    @Tag("performance")
+    public void testNarrowProjectionCutsTransferAndDecoding() {
+        when(mongoTemplate.find(any(Query.class), eq(Job.class))).thenReturn(List.of());
+        jobRepositoryCustom.findAllByUserIdAndCandidateIdProjected(USER_ID, CANDIDATE_ID, List.of("companyName", "title"));
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(queryCaptor.capture(), eq(Job.class));
+        var projection = queryCaptor.getValue().getFieldsObject();
+
+        var converter = converter();
+        var lines = IntStream.range(0, 50).mapToObj(i -> "Led the BARK migration of service " + i + " to the new platform").toList();
+        var job = new Job(ID, USER_ID, CANDIDATE_ID, "BARK_NAME", "BARK_TITLE", LocalDate.of(2020, 1, 1), null,
+                lines, lines, true, null, 0L);
+        var wide = new Document();
+        converter.write(job, wide);
+        //what mongo returns for the projection, id comes back as _id
+        var narrow = new Document();
+        wide.forEach((field, value) -> {
+            if (projection.containsKey(field) || (field.equals("_id") && projection.containsKey("id"))) {
+                narrow.put(field, value);
+            }
+        });
+        var wideBson = new RawBsonDocument(wide, new DocumentCodec());
+        var narrowBson = new RawBsonDocument(narrow, new DocumentCodec());
+
+        //warm up both paths, a cold jit would count against whichever runs first
+        decodeNanos(converter, wideBson, DECODES / 10);
+        decodeNanos(converter, narrowBson, DECODES / 10);
+        var wideNanos = decodeNanos(converter, wideBson, DECODES);
+        var narrowNanos = decodeNanos(converter, narrowBson, DECODES);
+        log.info("wide bytes={} decode={}ms narrow bytes={} decode={}ms", wideBson.getByteBuffer().remaining(),
+                TimeUnit.NANOSECONDS.toMillis(wideNanos), narrowBson.getByteBuffer().remaining(), TimeUnit.NANOSECONDS.toMillis(narrowNanos));
+
+        assertTrue(narrowBson.getByteBuffer().remaining() * 10 < wideBson.getByteBuffer().remaining());
+        assertTrue(narrowNanos < wideNanos);
+    }
+
+    private static long decodeNanos(MappingMongoConverter converter, RawBsonDocument bson, int decodes) {
+        var start = System.nanoTime();
+        for (int i = 0; i < decodes; i++) {
+            assertEquals("BARK_NAME", converter.read(Job.class, bson.decode(new DocumentCodec())).companyName());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static MappingMongoConverter converter() {
+        var conversions = new MongoCustomConversions(List.of());
+        var mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        var converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
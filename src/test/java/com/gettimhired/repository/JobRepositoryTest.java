@@ -0,0 +1,42 @@
+package com.gettimhired.repository;
+
+import com.gettimhired.model.mongo.Job;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobRepositoryTest {
+
+    //the candidate listing relies on mongo for its order, so pin down what the derived queries ask for
+    @Test
+    public void testCurrentJobsQueryHasNoEndDate() {
+        var tree = new PartTree("streamAllByCandidateIdAndEndDateIsNull", Job.class);
+
+        assertEquals(List.of("candidateId:SIMPLE_PROPERTY", "endDate:IS_NULL"), parts(tree));
+        assertTrue(tree.getSort().isUnsorted());
+    }
+
+    @Test
+    public void testPastJobsQueryIsNewestEndDateFirst() {
+        var tree = new PartTree("streamAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc", Job.class);
+
+        assertEquals(List.of("candidateId:SIMPLE_PROPERTY", "endDate:IS_NOT_NULL"), parts(tree));
+        assertEquals(Sort.by(Sort.Direction.DESC, "endDate"), tree.getSort());
+    }
+
+    @Test
+    public void testRepositoryDeclaresBothListingQueries() throws Exception {
+        assertNotNull(JobRepository.class.getMethod("streamAllByCandidateIdAndEndDateIsNull", String.class));
+        assertNotNull(JobRepository.class.getMethod("streamAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc", String.class));
+    }
+
+    private static List<String> parts(PartTree tree) {
+        return tree.getParts().stream()
+                .map(part -> part.getProperty().getSegment() + ":" + part.getType().name())
+                .toList();
+    }
+}
@@ -3,71 +3,106 @@ package com.gettimhired.resolver;
 import com.gettimhired.model.dto.JobDTO;
 import com.gettimhired.model.dto.input.JobInputDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
+import com.gettimhired.service.JobChangePublisher;
 import com.gettimhired.service.JobService;
+import graphql.GraphQLContext;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
 import org.mockito.ArgumentCaptor;
+import org.springframework.graphql.execution.DefaultBatchLoaderRegistry;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class JobResolverTest {
 
     private JobService jobService;
+    private JobChangePublisher jobChangePublisher;
     private UserDetails userDetails;
     private JobResolver jobResolver;
+    private DefaultBatchLoaderRegistry batchLoaderRegistry;
 
     @BeforeEach
     void setUp() {
         jobService = mock(JobService.class);
+        jobChangePublisher = mock(JobChangePublisher.class);
         userDetails = mock(UserDetails.class);
-        jobResolver = new JobResolver(jobService);
+        batchLoaderRegistry = new DefaultBatchLoaderRegistry();
+        jobResolver = new JobResolver(jobService, jobChangePublisher, batchLoaderRegistry);
     }
 
     @Test
     void testGetJobs() {
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.findAllJobsForUserAndCandidateId("user1", "userId1")).thenReturn(Collections.emptyList());
+        when(jobService.findAllJobsForUserAndCandidateId("user1", "userId1", Set.of("companyName"))).thenReturn(Collections.emptyList());
 
-        List<JobDTO> result = jobResolver.getJobs(userDetails, "userId1");
+        List<JobDTO> result = jobResolver.getJobs(userDetails, "userId1", selectionSet("companyName"));
 
         assertEquals(Collections.emptyList(), result);
 
         ArgumentCaptor<String> userIdCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> candidateIdCaptor = ArgumentCaptor.forClass(String.class);
-        verify(jobService, times(1)).findAllJobsForUserAndCandidateId(userIdCaptor.capture(), candidateIdCaptor.capture());
+        verify(jobService, times(1)).findAllJobsForUserAndCandidateId(userIdCaptor.capture(), candidateIdCaptor.capture(), eq(Set.of("companyName")));
         assertEquals("user1", userIdCaptor.getValue());
         assertEquals("userId1", candidateIdCaptor.getValue());
         verify(userDetails, times(2)).getUsername();
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void testGetJobById() {
-        JobDTO job = new JobDTO("1", "user1", "userId1", "candidateId1", "Company", LocalDate.parse("2016-01-01"), LocalDate.parse("2017-01-01"), Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE");
+        JobDTO job = new JobDTO("1", "user1", "userId1", "candidateId1", "Company", LocalDate.parse("2016-01-01"), LocalDate.parse("2017-01-01"), Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE", 0L);
+        DataLoader<JobResolver.JobKey, JobDTO> jobLoader = mock(DataLoader.class);
+        var key = new JobResolver.JobKey("1", "user1", Set.of("id", "title"));
         when(userDetails.getUsername()).thenReturn("user1");
-        when(jobService.findJobByIdAndUserId("1", "user1")).thenReturn(Optional.of(job));
+        when(jobLoader.load(key)).thenReturn(CompletableFuture.completedFuture(job));
 
-        JobDTO result = jobResolver.getJobById(userDetails, "1");
+        JobDTO result = jobResolver.getJobById(userDetails, "1", selectionSet("id", "title"), jobLoader).join();
 
         assertEquals(job, result);
-
-        ArgumentCaptor<String> idCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> userIdCaptor = ArgumentCaptor.forClass(String.class);
-        verify(jobService, times(1)).findJobByIdAndUserId(idCaptor.capture(), userIdCaptor.capture());
-        assertEquals("1", idCaptor.getValue());
-        assertEquals("user1", userIdCaptor.getValue());
+        verify(jobLoader, times(1)).load(key);
         verify(userDetails, times(2)).getUsername();
     }
 
+    @Test
+    void testJobLoaderBatchesKeysIntoOneQuery() {
+        JobDTO job = new JobDTO("1", "user1", "candidateId1", "Company", "title", LocalDate.parse("2016-01-01"), null, Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE", 0L);
+        when(jobService.findJobsByIdsAndUserId(Set.of("1", "2"), "user1", Set.of("id", "title", "companyName")))
+                .thenReturn(Map.of("1", job));
+        var dataLoaderRegistry = new DataLoaderRegistry();
+        batchLoaderRegistry.registerDataLoaders(dataLoaderRegistry, GraphQLContext.newContext().build());
+        DataLoader<JobResolver.JobKey, JobDTO> jobLoader = dataLoaderRegistry.getDataLoader(JobDTO.class.getName());
+
+        var first = jobLoader.load(new JobResolver.JobKey("1", "user1", Set.of("id", "title")));
+        var second = jobLoader.load(new JobResolver.JobKey("2", "user1", Set.of("id")));
+        var again = jobLoader.load(new JobResolver.JobKey("1", "user1", Set.of("id", "companyName")));
+        jobLoader.dispatchAndJoin();
+
+        assertEquals(job, first.join());
+        assertNull(second.join());
+        assertEquals(job, again.join());
+        verify(jobService, times(1)).findJobsByIdsAndUserId(anyCollection(), anyString(), anyCollection());
+    }
+
     @Test
     void testCreateJob() {
-        JobInputDTO jobInputDTO = new JobInputDTO("1", "userId1", "candidateId1", "Company", "title", LocalDate.parse("2016-01-01"), LocalDate.parse("2017-01-01"), Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE");
+        JobInputDTO jobInputDTO = new JobInputDTO("1", "userId1", "candidateId1", "Company", "title", LocalDate.parse("2016-01-01"), LocalDate.parse("2017-01-01"), Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE", null);
         JobDTO jobDTO = new JobDTO(jobInputDTO);
         when(userDetails.getUsername()).thenReturn("userId1");
         when(jobService.createJob("userId1", "candidateId1", jobDTO)).thenReturn(Optional.of(jobDTO));
@@ -88,7 +123,7 @@ class JobResolverTest {
 
     @Test
     void testUpdateJob() {
-        JobInputDTO jobInputDTO = new JobInputDTO("1", "userId1", "candidateId1", "Company", "title", LocalDate.parse("2016-01-01"), LocalDate.parse("2017-01-01"), Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE");
+        JobInputDTO jobInputDTO = new JobInputDTO("1", "userId1", "candidateId1", "Company", "title", LocalDate.parse("2016-01-01"), LocalDate.parse("2017-01-01"), Collections.emptyList(), Collections.emptyList(), true, "BARK_LEAVE", null);
         JobUpdateDTO jobUpdateDTO = new JobUpdateDTO(jobInputDTO);
         JobDTO jobDTO = new JobDTO(jobInputDTO);
         when(userDetails.getUsername()).thenReturn("userId1");
@@ -127,4 +162,17 @@ class JobResolverTest {
         verify(userDetails, times(2)).getUsername();
     }
 
-}
\ No newline at end of file
+
+    private static DataFetchingFieldSelectionSet selectionSet(String... fields) {
+        var selectionSet = mock(DataFetchingFieldSelectionSet.class);
+        List<SelectedField> selectedFields = Arrays.stream(fields)
+                .map(field -> {
+                    var selectedField = mock(SelectedField.class);
+                    when(selectedField.getName()).thenReturn(field);
+                    return selectedField;
+                })
+                .toList();
+        when(selectionSet.getImmediateFields()).thenReturn(selectedFields);
+        return selectionSet;
+    }
+}
@@ -0,0 +1,159 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.mongo.JobCacheInvalidation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.Message;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.gettimhired.TestHelper.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JobCacheInvalidationBusTest {
+
+    //each node is its own cache and bus, the shared mongo template stands in for the capped collection
+    private Node first;
+    private Node second;
+    private MongoTemplate mongoTemplate;
+    private final List<JobCacheInvalidationBus> buses = new ArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getCollectionName(JobCacheInvalidation.class)).thenReturn("jobCacheInvalidation");
+        when(mongoTemplate.collectionExists("jobCacheInvalidation")).thenReturn(true);
+        //every insert is tailed by every node, the publisher included
+        when(mongoTemplate.insert(any(JobCacheInvalidation.class))).thenAnswer(invocation -> {
+            JobCacheInvalidation invalidation = invocation.getArgument(0);
+            var stored = new JobCacheInvalidation(new ObjectId(), invalidation.origin(), invalidation.sequence(), invalidation.userId(),
+                    invalidation.candidateId(), invalidation.jobId(), invalidation.publishedAt());
+            buses.forEach(bus -> bus.onMessage(message(stored)));
+            return stored;
+        });
+        first = new Node();
+        second = new Node();
+    }
+
+    @Test
+    public void testPublishEvictsOtherNode() {
+        first.cache.getJobs(USER_ID, CANDIDATE_ID, () -> List.of(job("OLD")));
+        second.cache.getJobs(USER_ID, CANDIDATE_ID, () -> List.of(job("OLD")));
+
+        first.bus.publish(USER_ID, CANDIDATE_ID, ID);
+
+        assertNull(second.cache.getJobsIfPresent(USER_ID, CANDIDATE_ID));
+        assertEquals(1.0, second.meterRegistry.counter("jobs.cache.invalidation", "result", "received").count());
+        assertEquals(1L, second.meterRegistry.timer("jobs.cache.invalidation.lag").count());
+        //the publisher already evicted locally and skips its own entry
+        assertNotNull(first.cache.getJobsIfPresent(USER_ID, CANDIDATE_ID));
+        assertEquals(0.0, first.meterRegistry.counter("jobs.cache.invalidation", "result", "received").count());
+        assertEquals(1.0, first.meterRegistry.counter("jobs.cache.invalidation", "result", "published").count());
+    }
+
+    @Test
+    public void testPublishWithoutCandidateEvictsEveryEntryOfTheUser() {
+        second.cache.getJobs(USER_ID, CANDIDATE_ID, () -> List.of(job("OLD")));
+        second.cache.getJobs(USER_ID, "BARK_C_ID_TWO", () -> List.of(job("OLD")));
+        second.cache.getJobs("OTHER_USER", CANDIDATE_ID, () -> List.of(job("OLD")));
+
+        first.bus.publish(USER_ID, null, ID);
+
+        assertNull(second.cache.getJobsIfPresent(USER_ID, CANDIDATE_ID));
+        assertNull(second.cache.getJobsIfPresent(USER_ID, "BARK_C_ID_TWO"));
+        assertNotNull(second.cache.getJobsIfPresent("OTHER_USER", CANDIDATE_ID));
+    }
+
+    @Test
+    public void testFirstSubscriptionReplaysEveryOtherNode() {
+        var query = second.bus.resumeQuery().getQueryObject();
+
+        assertEquals(List.of(new Document("origin", new Document("$nin", List.of(origin(second))))), query.get("$or"));
+    }
+
+    @Test
+    public void testResubscriptionResumesAfterLastSeenSequence() {
+        first.bus.publish(USER_ID, CANDIDATE_ID, ID);
+        first.bus.publish(USER_ID, CANDIDATE_ID, ID);
+
+        var query = second.bus.resumeQuery().getQueryObject();
+
+        //first's next entry is sequence 3, anything from a node not seen yet is new
+        assertEquals(List.of(
+                new Document("origin", new Document("$nin", List.of(origin(first), origin(second)))),
+                new Document("origin", origin(first)).append("sequence", new Document("$gt", 2L))
+        ), query.get("$or"));
+    }
+
+    @Test
+    public void testPublishFailureDoesNotThrow() {
+        when(mongoTemplate.insert(any(JobCacheInvalidation.class))).thenThrow(new IllegalStateException("mongo is down"));
+
+        assertDoesNotThrow(() -> first.bus.publish(USER_ID, CANDIDATE_ID, ID));
+
+        assertEquals(1.0, first.meterRegistry.counter("jobs.cache.invalidation", "result", "publish_failed").count());
+    }
+
+    @Test
+    public void testPublishSkippedUntilCollectionIsReady() {
+        var bus = new JobCacheInvalidationBus(mongoTemplate, mock(JobCache.class), new SimpleMeterRegistry(), true, Duration.ofSeconds(5), 1024);
+
+        bus.publish(USER_ID, CANDIDATE_ID, ID);
+
+        //inserting first would create a plain collection nobody can tail
+        verify(mongoTemplate, never()).insert(any(JobCacheInvalidation.class));
+    }
+
+    @Test
+    public void testMissingCollectionIsCreatedCapped() {
+        when(mongoTemplate.collectionExists("jobCacheInvalidation")).thenReturn(false);
+        var bus = new JobCacheInvalidationBus(mongoTemplate, mock(JobCache.class), new SimpleMeterRegistry(), true, Duration.ofSeconds(5), 1024);
+
+        bus.ensureCappedCollection();
+
+        verify(mongoTemplate, times(1)).createCollection(eq("jobCacheInvalidation"), any(CollectionOptions.class));
+    }
+
+    private class Node {
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final JobCache cache = new JobCache(1000, Duration.ofMinutes(10), meterRegistry);
+        private final JobCacheInvalidationBus bus = new JobCacheInvalidationBus(mongoTemplate, cache, meterRegistry, true, Duration.ofSeconds(5), 1024);
+
+        private Node() {
+            bus.ensureCappedCollection();
+            buses.add(bus);
+        }
+    }
+
+    //the origin a node stamps on what it publishes
+    private String origin(Node node) {
+        var captor = ArgumentCaptor.forClass(JobCacheInvalidation.class);
+        node.bus.publish("ORIGIN_PROBE", null, null);
+        verify(mongoTemplate, atLeastOnce()).insert(captor.capture());
+        return captor.getValue().origin();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Message<?, JobCacheInvalidation> message(JobCacheInvalidation invalidation) {
+        Message<Object, JobCacheInvalidation> message = mock(Message.class);
+        when(message.getBody()).thenReturn(invalidation);
+        return message;
+    }
+
+    private static JobDTO job(String companyName) {
+        return new JobDTO(ID, USER_ID, CANDIDATE_ID, companyName, "BARK_TITLE", LocalDate.parse("2020-01-01"), null, List.of(), List.of(), true, "BARK_REASON", 0L);
+    }
+}
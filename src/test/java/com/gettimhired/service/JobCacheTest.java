@@ -0,0 +1,131 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.dto.JobDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.gettimhired.TestHelper.CANDIDATE_ID;
+import static com.gettimhired.TestHelper.USER_ID;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobCacheTest {
+
+    private JobCache jobCache;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        jobCache = new JobCache(10, Duration.ofMinutes(10), meterRegistry);
+    }
+
+    @Test
+    public void testInvalidateDuringLoadDropsTheLoadedValue() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var staleRead = executor.submit(() -> jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> {
+                loading.countDown();
+                await(release);
+                return List.of(getJobDto("STALE"));
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            //the write lands while the read is still loading
+            var invalidate = Executors.newSingleThreadExecutor().submit(() -> jobCache.invalidate(USER_ID, CANDIDATE_ID));
+            release.countDown();
+            invalidate.get(5, TimeUnit.SECONDS);
+
+            assertEquals("STALE", staleRead.get(5, TimeUnit.SECONDS).get(0).companyName());
+            var result = jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> List.of(getJobDto("FRESH")));
+            assertEquals("FRESH", result.get(0).companyName());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLoadRunsOutsideTheMapLock() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var read = executor.submit(() -> jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> {
+                loading.countDown();
+                await(release);
+                return List.of(getJobDto("BARK_NAME"));
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            //a write to the same key doesn't wait behind the load, nothing holds the bin while it runs
+            jobCache.invalidate(USER_ID, CANDIDATE_ID);
+            assertNull(jobCache.getJobsIfPresent(USER_ID, CANDIDATE_ID));
+            release.countDown();
+
+            assertEquals("BARK_NAME", read.get(5, TimeUnit.SECONDS).get(0).companyName());
+            assertNull(jobCache.getJobsIfPresent(USER_ID, CANDIDATE_ID));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsShareOneLoad() throws Exception {
+        var loads = new AtomicInteger();
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var first = executor.submit(() -> jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return List.of(getJobDto("BARK_NAME"));
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            var second = executor.submit(() -> jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> {
+                loads.incrementAndGet();
+                return List.of(getJobDto("OTHER"));
+            }));
+            release.countDown();
+
+            assertEquals("BARK_NAME", first.get(5, TimeUnit.SECONDS).get(0).companyName());
+            assertEquals("BARK_NAME", second.get(5, TimeUnit.SECONDS).get(0).companyName());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedLoadIsRethrownAndNotCached() {
+        assertThrows(IllegalStateException.class, () -> jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> {
+            throw new IllegalStateException("Database error");
+        }));
+
+        var result = jobCache.getJobs(USER_ID, CANDIDATE_ID, () -> List.of(getJobDto("BARK_NAME")));
+
+        assertEquals("BARK_NAME", result.get(0).companyName());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static JobDTO getJobDto(String companyName) {
+        return new JobDTO(null, USER_ID, CANDIDATE_ID, companyName, null, null, null, null, null, null, null, null);
+    }
+}
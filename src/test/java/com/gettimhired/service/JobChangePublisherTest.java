@@ -0,0 +1,132 @@
+package com.gettimhired.service;
+
+import com.gettimhired.config.MongoTopology;
+import com.gettimhired.model.dto.JobChangeDTO;
+import com.gettimhired.model.mongo.Job;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.Message;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JobChangePublisherTest {
+
+    private JobChangePublisher jobChangePublisher;
+
+    @BeforeEach
+    public void init() {
+        jobChangePublisher = new JobChangePublisher(mock(MongoTemplate.class), mock(MongoTopology.class), false, 2, Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testStandaloneServerDoesNotStartTheChangeStream() {
+        var mongoTemplate = mock(MongoTemplate.class);
+        var mongoTopology = mock(MongoTopology.class);
+        when(mongoTopology.isReplicated()).thenReturn(false);
+        var publisher = new JobChangePublisher(mongoTemplate, mongoTopology, true, 2, Duration.ofSeconds(5));
+
+        publisher.start();
+
+        assertFalse(publisher.isRunning());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void testChangesOnlyReachTheOwnersSubscription() {
+        var received = new CopyOnWriteArrayList<JobChangeDTO>();
+        var other = new CopyOnWriteArrayList<JobChangeDTO>();
+        jobChangePublisher.changes("BARK_USER", "BARK_CANDIDATE").subscribe(received::add);
+        jobChangePublisher.changes("OTHER_USER", "BARK_CANDIDATE").subscribe(other::add);
+
+        jobChangePublisher.onMessage(message(OperationType.UPDATE, job("1", "BARK_USER", "BARK_CANDIDATE"), null));
+        jobChangePublisher.onMessage(message(OperationType.INSERT, job("2", "BARK_USER", "OTHER_CANDIDATE"), null));
+
+        assertEquals(1, received.size());
+        assertEquals("UPDATE", received.get(0).operation());
+        assertEquals("1", received.get(0).job().id());
+        assertEquals(List.of(), other);
+    }
+
+    @Test
+    public void testDeleteUsesPreImage() {
+        var received = new CopyOnWriteArrayList<JobChangeDTO>();
+        jobChangePublisher.changes("BARK_USER", "BARK_CANDIDATE").subscribe(received::add);
+
+        jobChangePublisher.onMessage(message(OperationType.DELETE, null,
+                new Document("userId", "BARK_USER").append("candidateId", "BARK_CANDIDATE")));
+
+        assertEquals(1, received.size());
+        assertEquals("DELETE", received.get(0).operation());
+        assertEquals("1", received.get(0).id());
+        assertNull(received.get(0).job());
+    }
+
+    @Test
+    public void testDeleteWithoutPreImageIsSkipped() {
+        var received = new CopyOnWriteArrayList<JobChangeDTO>();
+        jobChangePublisher.changes("BARK_USER", "BARK_CANDIDATE").subscribe(received::add);
+
+        jobChangePublisher.onMessage(message(OperationType.DELETE, null, null));
+
+        assertEquals(List.of(), received);
+    }
+
+    @Test
+    public void testSlowSubscriberDropsOldestWithoutBlockingOthers() {
+        var slow = new CopyOnWriteArrayList<String>();
+        var fast = new CopyOnWriteArrayList<String>();
+        var slowSubscriber = new BaseSubscriber<JobChangeDTO>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                //no demand until the test asks for it
+            }
+
+            @Override
+            protected void hookOnNext(JobChangeDTO value) {
+                slow.add(value.id());
+            }
+        };
+        jobChangePublisher.changes("BARK_USER", "BARK_CANDIDATE").subscribe(slowSubscriber);
+        jobChangePublisher.changes("BARK_USER", "BARK_CANDIDATE").subscribe(change -> fast.add(change.id()));
+
+        for (int i = 0; i < 5; i++) {
+            jobChangePublisher.onMessage(message(OperationType.UPDATE, job(String.valueOf(i), "BARK_USER", "BARK_CANDIDATE"), null));
+        }
+        slowSubscriber.request(10);
+
+        assertEquals(List.of("0", "1", "2", "3", "4"), fast);
+        //buffer of two keeps the newest changes
+        assertEquals(List.of("3", "4"), slow);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Message<ChangeStreamDocument<Document>, Job> message(OperationType operationType, Job job, Document before) {
+        ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+        when(raw.getOperationType()).thenReturn(operationType);
+        when(raw.getResumeToken()).thenReturn(new BsonDocument("_data", new BsonString("TOKEN")));
+        when(raw.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString(job == null ? "1" : job.id())));
+        when(raw.getFullDocumentBeforeChange()).thenReturn(before);
+        Message<ChangeStreamDocument<Document>, Job> message = mock(Message.class);
+        when(message.getRaw()).thenReturn(raw);
+        when(message.getBody()).thenReturn(job);
+        return message;
+    }
+
+    private static Job job(String id, String userId, String candidateId) {
+        return new Job(id, userId, candidateId, "BARK_COMPANY", "BARK_TITLE", LocalDate.parse("2020-01-01"), null, List.of(), List.of(), true, "BARK_REASON", 1L);
+    }
+}
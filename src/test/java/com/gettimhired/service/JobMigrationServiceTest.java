@@ -0,0 +1,191 @@
+package com.gettimhired.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gettimhired.model.mongo.ChangeSet;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.repository.ChangeSetRepository;
+import com.gettimhired.repository.JobRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class JobMigrationServiceTest {
+
+    private static final String MIGRATE_URL = "http://localhost/api/candidates/all/jobs/migrate";
+
+    private JobMigrationService jobMigrationService;
+    private MockRestServiceServer server;
+    private JobRepository jobRepository;
+    private ChangeSetRepository changeSetRepository;
+    private MongoTemplate mongoTemplate;
+    private JobCache jobCache;
+    private JobCacheInvalidationBus jobCacheInvalidationBus;
+    private final List<List<String>> batches = new ArrayList<>();
+    private final List<Job> written = new ArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        var builder = RestClient.builder().baseUrl("http://localhost");
+        server = MockRestServiceServer.bindTo(builder).build();
+        jobRepository = mock(JobRepository.class);
+        changeSetRepository = mock(ChangeSetRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        jobCache = mock(JobCache.class);
+        jobCacheInvalidationBus = mock(JobCacheInvalidationBus.class);
+        jobMigrationService = new JobMigrationService(
+                builder.build(),
+                new ObjectMapper().findAndRegisterModules(),
+                jobRepository,
+                changeSetRepository,
+                mongoTemplate,
+                jobCache,
+                jobCacheInvalidationBus,
+                2
+        );
+        //the service clears the batch after writing so copy the ids out
+        doAnswer(invocation -> {
+            List<Job> jobs = invocation.getArgument(0);
+            batches.add(jobs.stream().map(Job::id).toList());
+            written.addAll(jobs);
+            return List.copyOf(jobs);
+        }).when(jobRepository).insertAllIfAbsent(any());
+    }
+
+    @Test
+    public void testMigrateJobsWritesInBatches() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess(exportJson(5), MediaType.APPLICATION_JSON));
+
+        jobMigrationService.migrateJobs("changeset-004", () -> false);
+
+        assertEquals(List.of(List.of("JOB_0", "JOB_1"), List.of("JOB_2", "JOB_3"), List.of("JOB_4")), batches);
+        assertEquals(List.of(2L, 4L, 5L), checkpoints(3));
+        server.verify();
+    }
+
+    @Test
+    public void testMigrateJobsResumesFromCheckpoint() {
+        var changeSet = new ChangeSet();
+        changeSet.setId("changeset-004");
+        changeSet.setCheckpoint(3L);
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.of(changeSet));
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess(exportJson(5), MediaType.APPLICATION_JSON));
+
+        jobMigrationService.migrateJobs("changeset-004", () -> false);
+
+        assertEquals(List.of(List.of("JOB_3", "JOB_4")), batches);
+        assertEquals(List.of(5L), checkpoints(1));
+    }
+
+    @Test
+    public void testMigrateJobsNormalizesNullLists() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess(exportJson(1), MediaType.APPLICATION_JSON));
+
+        jobMigrationService.migrateJobs("changeset-004", () -> false);
+
+        assertEquals(1, written.size());
+        var job = written.get(0);
+        assertEquals(List.of(), job.skills());
+        assertEquals(List.of(), job.achievements());
+        assertEquals(0L, job.version());
+    }
+
+    @Test
+    public void testMigrateJobsEmptyExport() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+        jobMigrationService.migrateJobs("changeset-004", () -> false);
+
+        verify(jobRepository, never()).insertAllIfAbsent(any());
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(ChangeSet.class));
+    }
+
+    @Test
+    public void testMigrateJobsFailsOnErrorStatus() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        assertThrows(IllegalStateException.class, () -> jobMigrationService.migrateJobs("changeset-004", () -> false));
+
+        verify(jobRepository, never()).insertAllIfAbsent(any());
+    }
+
+    @Test
+    public void testMigrateJobsStopsBetweenBatchesWhenLeaseIsLost() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess(exportJson(5), MediaType.APPLICATION_JSON));
+
+        //the lease goes as soon as the first batch is written
+        assertThrows(CancellationException.class, () -> jobMigrationService.migrateJobs("changeset-004", () -> !batches.isEmpty()));
+
+        assertEquals(List.of(List.of("JOB_0", "JOB_1")), batches);
+        assertEquals(List.of(2L), checkpoints(1));
+    }
+
+    @Test
+    public void testMigrateJobsEvictsCandidatesWithInsertedJobs() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess(exportJson(2), MediaType.APPLICATION_JSON));
+
+        jobMigrationService.migrateJobs("changeset-004", () -> false);
+
+        //both jobs belong to the same candidate, one eviction covers them
+        verify(jobCache, times(1)).invalidate("BARK", "CANDIDATE");
+        verify(jobCacheInvalidationBus, times(1)).publish("BARK", "CANDIDATE", null);
+    }
+
+    @Test
+    public void testMigrateJobsSkipsEvictionWhenNothingIsInserted() {
+        when(changeSetRepository.findById("changeset-004")).thenReturn(Optional.empty());
+        server.expect(requestTo(MIGRATE_URL)).andRespond(withSuccess(exportJson(2), MediaType.APPLICATION_JSON));
+        //a resumed batch whose jobs are all there already
+        doReturn(List.of()).when(jobRepository).insertAllIfAbsent(any());
+
+        jobMigrationService.migrateJobs("changeset-004", () -> false);
+
+        verify(jobCache, never()).invalidate(any(), any());
+        verify(jobCacheInvalidationBus, never()).publish(any(), any(), any());
+        assertEquals(List.of(2L), checkpoints(1));
+    }
+
+    private List<Long> checkpoints(int times) {
+        var captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(times)).updateFirst(any(Query.class), captor.capture(), eq(ChangeSet.class));
+        return captor.getAllValues().stream()
+                .map(update -> (Long) update.getUpdateObject().get("$set", Document.class).get("checkpoint"))
+                .toList();
+    }
+
+    private static String exportJson(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "{\"id\":\"JOB_" + i + "\",\"userId\":\"BARK\",\"candidateId\":\"CANDIDATE\"," +
+                        "\"companyName\":\"COMPANY\",\"title\":\"TITLE\",\"startDate\":\"2020-01-01\"," +
+                        "\"currentlyWorking\":true,\"reasonForLeaving\":\"REASON\",\"extra\":{\"nested\":[1,2]}}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+}
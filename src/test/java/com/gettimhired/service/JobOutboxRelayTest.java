@@ -0,0 +1,118 @@
+package com.gettimhired.service;
+
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.repository.JobOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.gettimhired.TestHelper.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class JobOutboxRelayTest {
+
+    private JobOutboxRepository jobOutboxRepository;
+    private JobOutboxSink jobOutboxSink;
+    private SimpleMeterRegistry meterRegistry;
+    private JobOutboxRelay jobOutboxRelay;
+
+    @BeforeEach
+    public void init() {
+        jobOutboxRepository = mock(JobOutboxRepository.class);
+        jobOutboxSink = mock(JobOutboxSink.class);
+        meterRegistry = new SimpleMeterRegistry();
+        jobOutboxRelay = new JobOutboxRelay(jobOutboxRepository, jobOutboxSink, meterRegistry, true, 2, Duration.ofSeconds(1), Duration.ofSeconds(30));
+        when(jobOutboxRepository.claimRelay(anyString(), any(Duration.class))).thenReturn(true);
+    }
+
+    @Test
+    public void testRelayPublishesFullBatchesUntilCaughtUp() throws Exception {
+        var events = events(3);
+        when(jobOutboxRepository.findPending(2)).thenReturn(events.subList(0, 2), events.subList(2, 3));
+        var published = new ArrayList<JobOutboxEvent>();
+        doAnswer(invocation -> published.addAll(invocation.getArgument(0))).when(jobOutboxSink).publish(anyList());
+
+        jobOutboxRelay.relay();
+
+        assertEquals(events, published);
+        verify(jobOutboxRepository, times(2)).findPending(2);
+        verify(jobOutboxRepository, times(1)).markPublished(eq(List.of(events.get(0).id(), events.get(1).id())), any(Instant.class));
+        verify(jobOutboxRepository, times(1)).markPublished(eq(List.of(events.get(2).id())), any(Instant.class));
+        assertEquals(3.0, meterRegistry.counter("jobs.outbox.events", "result", "published").count());
+        assertEquals(3L, meterRegistry.timer("jobs.outbox.lag").count());
+    }
+
+    @Test
+    public void testSinkFailureLeavesEventsPending() throws Exception {
+        when(jobOutboxRepository.findPending(2)).thenReturn(events(2));
+        doThrow(new IllegalStateException("broker is down")).when(jobOutboxSink).publish(anyList());
+
+        assertDoesNotThrow(() -> jobOutboxRelay.relay());
+
+        verify(jobOutboxRepository, never()).markPublished(anyCollection(), any(Instant.class));
+        assertEquals(2.0, meterRegistry.counter("jobs.outbox.events", "result", "failed").count());
+    }
+
+    @Test
+    public void testRelayWithoutLeaseDoesNothing() {
+        when(jobOutboxRepository.claimRelay(anyString(), any(Duration.class))).thenReturn(false);
+
+        jobOutboxRelay.relay();
+
+        verify(jobOutboxRepository, never()).findPending(anyInt());
+        verifyNoInteractions(jobOutboxSink);
+    }
+
+    @Test
+    public void testRelayThatLostItsLeaseBeforePublishingStops() throws Exception {
+        //claimed for the loop, gone by the time the batch would go out
+        when(jobOutboxRepository.claimRelay(anyString(), any(Duration.class))).thenReturn(true, false);
+        when(jobOutboxRepository.findPending(2)).thenReturn(events(2));
+
+        jobOutboxRelay.relay();
+
+        verifyNoInteractions(jobOutboxSink);
+        verify(jobOutboxRepository, never()).markPublished(anyCollection(), any(Instant.class));
+    }
+
+    @Test
+    public void testRelayThatLostItsLeaseWhilePublishingLeavesEventsPending() throws Exception {
+        when(jobOutboxRepository.claimRelay(anyString(), any(Duration.class))).thenReturn(true, true, false);
+        when(jobOutboxRepository.findPending(2)).thenReturn(events(2));
+
+        jobOutboxRelay.relay();
+
+        verify(jobOutboxSink, times(1)).publish(anyList());
+        verify(jobOutboxRepository, never()).markPublished(anyCollection(), any(Instant.class));
+        verify(jobOutboxRepository, times(1)).findPending(2);
+    }
+
+    @Test
+    public void testRelayWithNothingPendingDoesNotPublish() {
+        when(jobOutboxRepository.findPending(2)).thenReturn(List.of());
+
+        jobOutboxRelay.relay();
+
+        verifyNoInteractions(jobOutboxSink);
+    }
+
+    private static List<JobOutboxEvent> events(int count) {
+        var now = System.currentTimeMillis();
+        return IntStream.range(0, count)
+                .mapToObj(i -> new JobOutboxEvent(new ObjectId(), (long) i, JobOutbox.CREATED, ID + i, USER_ID, CANDIDATE_ID, null, now, null))
+                .toList();
+    }
+}
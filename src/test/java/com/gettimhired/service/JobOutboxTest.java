@@ -0,0 +1,128 @@
+package com.gettimhired.service;
+
+import com.gettimhired.config.MongoTopology;
+import com.gettimhired.model.mongo.Job;
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.repository.JobOutboxRepository;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JobOutboxTest {
+
+    private JobOutboxRepository jobOutboxRepository;
+    private PlatformTransactionManager transactionManager;
+    private MongoTopology mongoTopology;
+
+    @BeforeEach
+    public void init() {
+        jobOutboxRepository = mock(JobOutboxRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        mongoTopology = mock(MongoTopology.class);
+    }
+
+    @Test
+    public void testEnabledOnStandaloneServerFailsFast() {
+        when(mongoTopology.isReplicated()).thenReturn(false);
+
+        var ex = assertThrows(IllegalStateException.class, () -> jobOutbox(true).checkTopology());
+
+        assertTrue(ex.getMessage().contains("replica set"));
+    }
+
+    @Test
+    public void testDisabledDoesNotCheckTheTopology() {
+        jobOutbox(false).checkTopology();
+
+        verifyNoInteractions(mongoTopology);
+    }
+
+    @Test
+    public void testTransientTransactionErrorIsRetried() {
+        var attempts = new AtomicInteger();
+
+        var result = jobOutbox(true).inTransaction(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new UncategorizedMongoDbException("Write conflict", writeConflict());
+            }
+            return "BARK";
+        });
+
+        assertEquals("BARK", result);
+        assertEquals(2, attempts.get());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    public void testOtherErrorsAreNotRetried() {
+        var attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> jobOutbox(true).inTransaction(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Database error");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordAllocatesASequencePerCandidate() {
+        when(jobOutboxRepository.allocateSequence("CANDIDATE_ONE", 2)).thenReturn(7L);
+        when(jobOutboxRepository.allocateSequence("CANDIDATE_TWO", 1)).thenReturn(1L);
+
+        jobOutbox(true).record(JobOutbox.CREATED, List.of(job("JOB_1", "CANDIDATE_ONE"), job("JOB_2", "CANDIDATE_TWO"),
+                job("JOB_3", "CANDIDATE_ONE")));
+
+        ArgumentCaptor<List<JobOutboxEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jobOutboxRepository, times(1)).insert(eventsCaptor.capture());
+        assertEquals(List.of("JOB_1:7", "JOB_3:8", "JOB_2:1"), eventsCaptor.getValue().stream()
+                .map(event -> event.jobId() + ":" + event.sequence())
+                .toList());
+    }
+
+    @Test
+    public void testTransientTransactionErrorGivesUpAfterTheLastAttempt() {
+        var attempts = new AtomicInteger();
+
+        assertThrows(UncategorizedMongoDbException.class, () -> jobOutbox(true).inTransaction(() -> {
+            attempts.incrementAndGet();
+            throw new UncategorizedMongoDbException("Write conflict", writeConflict());
+        }));
+
+        assertEquals(5, attempts.get());
+    }
+
+    private JobOutbox jobOutbox(boolean enabled) {
+        return new JobOutbox(jobOutboxRepository, new TransactionTemplate(transactionManager), mongoTopology, enabled);
+    }
+
+    private static Job job(String id, String candidateId) {
+        return new Job(id, "USER", candidateId, "BARK_NAME", "BARK_TITLE", null, null, List.of(), List.of(), true, null, 0L);
+    }
+
+    private static MongoCommandException writeConflict() {
+        var response = new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(112))
+                .append("errmsg", new BsonString("WriteConflict"))
+                .append("errorLabels", new BsonArray(List.of(new BsonString("TransientTransactionError"))));
+        return new MongoCommandException(response, new ServerAddress());
+    }
+}
@@ -1,39 +1,71 @@
 package com.gettimhired.service;
 
 import com.gettimhired.TestHelper;
+import com.gettimhired.config.MongoTopology;
 import com.gettimhired.error.APIUpdateException;
+import com.gettimhired.model.dto.CandidateJobsDTO;
 import com.gettimhired.model.dto.JobDTO;
+import com.gettimhired.model.dto.update.JobPatchDTO;
 import com.gettimhired.model.dto.update.JobUpdateDTO;
 import com.gettimhired.model.mongo.Job;
+import com.gettimhired.model.mongo.JobOutboxEvent;
+import com.gettimhired.repository.JobOutboxRepository;
 import com.gettimhired.repository.JobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
-import org.springframework.web.client.RestClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static com.gettimhired.TestHelper.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 class JobServiceTest {
 
     private JobService jobService;
     private JobRepository jobRepository;
-    private RestClient restClient;
+    private JobCacheInvalidationBus jobCacheInvalidationBus;
+    private JobOutboxRepository jobOutboxRepository;
+    private JobCache jobCache;
+    private PlatformTransactionManager transactionManager;
 
     @BeforeEach
     public void init() {
         jobRepository = mock(JobRepository.class);
-        restClient = mock(RestClient.class);
-        jobService = new JobService(jobRepository, restClient);
+        jobCacheInvalidationBus = mock(JobCacheInvalidationBus.class);
+        jobOutboxRepository = mock(JobOutboxRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        jobService = jobService(true);
+    }
+
+    private JobService jobService(boolean outboxEnabled) {
+        var jobOutbox = new JobOutbox(jobOutboxRepository, new TransactionTemplate(transactionManager), mock(MongoTopology.class), outboxEnabled);
+        jobCache = new JobCache(1000, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        return new JobService(jobRepository, jobCache, jobCacheInvalidationBus, jobOutbox, 100, 3, 3, Validation.buildDefaultValidatorFactory().getValidator());
     }
 
     @Test
@@ -50,6 +82,373 @@ class JobServiceTest {
         assertEquals(2, result.size());
     }
 
+    @Test
+    public void testfindAllJobsForUserAndCandidateIdIsCached() {
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(getJob("BARK_NAME")));
+
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        var result = jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+
+        verify(jobRepository, times(1)).findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID);
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testStreamAllJobsForUserAndCandidateIdBypassesCache() {
+        when(jobRepository.streamAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID))
+                .thenReturn(Stream.of(getJob("BARK_NAME"), getJob("BARK_NAME_TWO")));
+
+        try (var result = jobService.streamAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID)) {
+            assertEquals(2, result.count());
+        }
+
+        verify(jobRepository, never()).findAllByUserIdAndCandidateId(anyString(), anyString());
+    }
+
+    @Test
+    public void testFindJobsByIdsAndUserIdIsOneQueryKeyedById() {
+        var e1 = getJob("BARK_NAME");
+        var e2 = getJob("BARK_NAME_TWO");
+        when(jobRepository.findAllByIdInAndUserIdProjected(Set.of(e1.id(), e2.id(), ID), USER_ID, Set.of("title")))
+                .thenReturn(List.of(e1, e2));
+
+        var result = jobService.findJobsByIdsAndUserId(Set.of(e1.id(), e2.id(), ID), USER_ID, Set.of("title"));
+
+        assertEquals(2, result.size());
+        assertEquals("BARK_NAME_TWO", result.get(e2.id()).companyName());
+        assertFalse(result.containsKey(ID));
+        verify(jobRepository, times(1)).findAllByIdInAndUserIdProjected(anyCollection(), anyString(), anyCollection());
+    }
+
+    @Test
+    public void testFindAllJobsForCandidateIdsUsesOneQueryForCacheMisses() {
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(getJob("BARK_NAME")));
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        var other = new Job("BARK_OTHER_ID", USER_ID, "BARK_C_ID_TWO", "BARK_NAME_TWO", null, null, null, null, null, null, null, 0L);
+        when(jobRepository.findAllByUserIdAndCandidateIdIn(USER_ID, List.of("BARK_C_ID_TWO", "BARK_C_ID_THREE")))
+                .thenReturn(List.of(other));
+
+        var result = jobService.findAllJobsForUserAndCandidateIds(USER_ID, List.of(CANDIDATE_ID, "BARK_C_ID_TWO", "BARK_C_ID_THREE", CANDIDATE_ID));
+
+        assertEquals(List.of(CANDIDATE_ID, "BARK_C_ID_TWO", "BARK_C_ID_THREE"), result.stream().map(CandidateJobsDTO::candidateId).toList());
+        assertEquals(1, result.get(0).jobs().size());
+        assertEquals("BARK_NAME_TWO", result.get(1).jobs().get(0).companyName());
+        assertTrue(result.get(2).jobs().isEmpty());
+        verify(jobRepository, times(1)).findAllByUserIdAndCandidateIdIn(anyString(), anyCollection());
+
+        //the batch filled the cache for the single candidate reads too
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, "BARK_C_ID_THREE");
+        verify(jobRepository, never()).findAllByUserIdAndCandidateId(USER_ID, "BARK_C_ID_THREE");
+    }
+
+    @Test
+    public void testFindAllJobsForCandidateIdsDoesNotCacheSnapshotOlderThanAWrite() {
+        //a write and its invalidate land while the $in query is running
+        when(jobRepository.findAllByUserIdAndCandidateIdIn(USER_ID, List.of(CANDIDATE_ID))).thenAnswer(invocation -> {
+            jobCache.invalidate(USER_ID, CANDIDATE_ID);
+            return List.of(getJob("OLD_NAME"));
+        });
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(getJob("NEW_NAME")));
+
+        var result = jobService.findAllJobsForUserAndCandidateIds(USER_ID, List.of(CANDIDATE_ID));
+
+        assertEquals("OLD_NAME", result.get(0).jobs().get(0).companyName());
+        assertNull(jobCache.getJobsIfPresent(USER_ID, CANDIDATE_ID));
+        assertEquals("NEW_NAME", jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID).get(0).companyName());
+    }
+
+    @Test
+    public void testFindAllJobsForCandidateIdsOverCapIsBadRequest() {
+        var ex = assertThrows(APIUpdateException.class,
+                () -> jobService.findAllJobsForUserAndCandidateIds(USER_ID, List.of("1", "2", "3", "4")));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    public void testCreateJobsReportsEachItem() {
+        //without the outbox the unordered insert keeps the jobs that went in
+        jobService = jobService(false);
+        var valid = new JobDTO(getJob("BARK_NAME"));
+        var invalid = new JobDTO(null, null, null, "", "BARK_TITLE", LocalDate.now(), null, null, null, true, "BARK_LEAVE", null);
+        var duplicate = new JobDTO(getJob("BARK_NAME_TWO"));
+        when(jobRepository.insertAllUnordered(anyList())).thenReturn(Map.of(1, "E11000 duplicate key error"));
+
+        var result = jobService.createJobs(USER_ID, CANDIDATE_ID, List.of(valid, invalid, duplicate));
+
+        verify(jobRepository, times(1)).insertAllUnordered(argThat(jobs -> jobs.size() == 2));
+        assertEquals(1, result.created());
+        assertEquals(2, result.failed());
+        assertTrue(result.items().get(0).created());
+        assertEquals("BARK_NAME", result.items().get(0).job().companyName());
+        assertFalse(result.items().get(1).created());
+        assertTrue(result.items().get(1).errors().stream().anyMatch(error -> error.startsWith("companyName")));
+        assertEquals(List.of("E11000 duplicate key error"), result.items().get(2).errors());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateJobsRecordsEventsInTheSameTransaction() {
+        var first = new JobDTO(getJob("BARK_NAME"));
+        var second = new JobDTO(getJob("BARK_NAME_TWO"));
+        when(jobRepository.insertAllUnordered(anyList())).thenReturn(Map.of());
+        when(jobOutboxRepository.allocateSequence(CANDIDATE_ID, 2)).thenReturn(41L);
+
+        var result = jobService.createJobs(USER_ID, CANDIDATE_ID, List.of(first, second));
+
+        assertEquals(2, result.created());
+        ArgumentCaptor<List<JobOutboxEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        var inOrder = inOrder(transactionManager, jobRepository, jobOutboxRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(jobRepository).insertAllUnordered(anyList());
+        inOrder.verify(jobOutboxRepository).allocateSequence(CANDIDATE_ID, 2);
+        inOrder.verify(jobOutboxRepository).insert(eventsCaptor.capture());
+        inOrder.verify(transactionManager).commit(any());
+        assertEquals(List.of(41L, 42L), eventsCaptor.getValue().stream().map(JobOutboxEvent::sequence).toList());
+        assertEquals("BARK_NAME", eventsCaptor.getValue().get(0).job().companyName());
+    }
+
+    @Test
+    public void testCreateJobsWithOutboxRollsBackTheBatchOnAFailedJob() {
+        var first = new JobDTO(getJob("BARK_NAME"));
+        var duplicate = new JobDTO(getJob("BARK_NAME_TWO"));
+        when(jobRepository.insertAllUnordered(anyList())).thenReturn(Map.of(1, "E11000 duplicate key error"));
+
+        var result = jobService.createJobs(USER_ID, CANDIDATE_ID, List.of(first, duplicate));
+
+        assertEquals(0, result.created());
+        assertEquals(List.of("Not saved, another job in the batch failed"), result.items().get(0).errors());
+        assertEquals(List.of("E11000 duplicate key error"), result.items().get(1).errors());
+        verify(jobOutboxRepository, never()).insert(anyList());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    public void testCreateJobsOverMaxSizeIsBadRequest() {
+        var job = new JobDTO(getJob("BARK_NAME"));
+
+        var ex = assertThrows(APIUpdateException.class,
+                () -> jobService.createJobs(USER_ID, CANDIDATE_ID, List.of(job, job, job, job)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    public void testCreateJobInvalidatesCachedJobs() {
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID))
+                .thenReturn(List.of(getJob("BARK_NAME")))
+                .thenReturn(List.of(getJob("BARK_NAME"), getJob("BARK_NAME_TWO")));
+        when(jobRepository.save(any(Job.class))).thenReturn(getJob("BARK_NAME_TWO"));
+
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        jobService.createJob(USER_ID, CANDIDATE_ID, new JobDTO(getJob("BARK_NAME_TWO")));
+        var result = jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+
+        verify(jobRepository, times(2)).findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID);
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void testUpdateJobInvalidatesCachedJobs() {
+        var job = getJob("BARK_NAME");
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(job));
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), isNull(), any(Update.class))).thenReturn(Optional.of(job));
+
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        jobService.updateJob(ID, USER_ID, CANDIDATE_ID, getJobUpdate());
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+
+        verify(jobRepository, times(2)).findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID);
+    }
+
+    @Test
+    public void testUpdateJobIsOneConditionalWrite() {
+        var job = getJob("BARK_NAME");
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), eq(0L), any(Update.class))).thenReturn(Optional.of(job));
+
+        var result = jobService.updateJob(ID, USER_ID, CANDIDATE_ID, getJobUpdate(), 0L);
+
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(jobRepository, times(1)).updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), eq(0L), updateCaptor.capture());
+        var set = (Document) updateCaptor.getValue().getUpdateObject().get("$set");
+        assertEquals("BARK_NAME", set.get("companyName"));
+        assertFalse(set.containsKey("userId"));
+        verify(jobRepository, never()).findById(anyString());
+        verify(jobRepository, never()).save(any(Job.class));
+        assertTrue(result.isPresent());
+    }
+
+    @Test
+    public void testPatchJobOnlyTouchesChangedFields() {
+        var patch = new JobPatchDTO(null, "BARK_NEW_TITLE", null, null, true, null, null,
+                List.of("Kotlin"), null, null, List.of("Old"), null);
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), isNull(), any(Update.class)))
+                .thenReturn(Optional.of(getJob("BARK_NAME")));
+
+        var result = jobService.patchJob(ID, USER_ID, CANDIDATE_ID, patch, null);
+
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(jobRepository, times(1)).updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), isNull(), updateCaptor.capture());
+        var updateObject = updateCaptor.getValue().getUpdateObject();
+        assertEquals(new Document("title", "BARK_NEW_TITLE").append("endDate", null), updateObject.get("$set"));
+        assertEquals(Set.of("skills"), ((Document) updateObject.get("$push")).keySet());
+        assertEquals(new Document("achievements", List.of("Old")), updateObject.get("$pullAll"));
+        assertTrue(result.isPresent());
+    }
+
+    @Test
+    public void testPatchJobAddAndRemoveSameArrayIsBadRequest() {
+        var patch = new JobPatchDTO(null, null, null, null, null, null, null,
+                List.of("Kotlin"), List.of("Java"), null, null, null);
+
+        var ex = assertThrows(APIUpdateException.class, () -> jobService.patchJob(ID, USER_ID, CANDIDATE_ID, patch, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    public void testPatchJobWithNothingToChangeIsBadRequest() {
+        var patch = new JobPatchDTO(null, null, null, null, false, null, null, List.of(), null, null, null, null);
+
+        var ex = assertThrows(APIUpdateException.class, () -> jobService.patchJob(ID, USER_ID, CANDIDATE_ID, patch, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    public void testUpdateJobStaleVersionIsConflict() {
+        when(jobRepository.findById(ID)).thenReturn(Optional.of(getJob("BARK_NAME")));
+
+        var ex = assertThrows(APIUpdateException.class,
+                () -> jobService.updateJob(ID, USER_ID, CANDIDATE_ID, getJobUpdate(), 5L));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getHttpStatus());
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+
+    @Test
+    public void testDeleteJobInvalidatesCachedJobsForUser() {
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(getJob("BARK_NAME")));
+        when(jobRepository.findAllByUserIdAndCandidateId("OTHER_USER", CANDIDATE_ID)).thenReturn(List.of(getJob("BARK_NAME")));
+
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        jobService.findAllJobsForUserAndCandidateId("OTHER_USER", CANDIDATE_ID);
+        jobService.deleteJob(ID, USER_ID);
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        jobService.findAllJobsForUserAndCandidateId("OTHER_USER", CANDIDATE_ID);
+
+        verify(jobRepository, times(2)).findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID);
+        verify(jobRepository, times(1)).findAllByUserIdAndCandidateId("OTHER_USER", CANDIDATE_ID);
+        verify(jobCacheInvalidationBus, times(1)).publish(USER_ID, null, ID);
+    }
+
+    @Test
+    public void testUpdateJobPublishesInvalidation() {
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), any(), any(Update.class)))
+                .thenReturn(Optional.of(getJob("BARK_NAME")));
+
+        jobService.updateJob(ID, USER_ID, CANDIDATE_ID, getJobUpdate(), null);
+
+        verify(jobCacheInvalidationBus, times(1)).publish(USER_ID, CANDIDATE_ID, ID);
+    }
+
+    @Test
+    public void testDeleteAllJobsInvalidatesCachedJobs() {
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(getJob("BARK_NAME")));
+
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+        jobService.deleteAllJobsForCandidateIdAndUserId(CANDIDATE_ID, USER_ID);
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+
+        verify(jobRepository, times(2)).findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID);
+    }
+
+    @Test
+    public void testfindAllJobsForUserAndCandidateIdProjected() {
+        var fields = Set.of("companyName");
+        when(jobRepository.findAllByUserIdAndCandidateIdProjected(USER_ID, CANDIDATE_ID, fields)).thenReturn(List.of(getJob("BARK_NAME")));
+
+        var result = jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID, fields);
+
+        verify(jobRepository, times(1)).findAllByUserIdAndCandidateIdProjected(USER_ID, CANDIDATE_ID, fields);
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testfindAllJobsForUserAndCandidateIdProjectedUsesCachedJobs() {
+        when(jobRepository.findAllByUserIdAndCandidateId(USER_ID, CANDIDATE_ID)).thenReturn(List.of(getJob("BARK_NAME")));
+        jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID);
+
+        var result = jobService.findAllJobsForUserAndCandidateId(USER_ID, CANDIDATE_ID, Set.of("companyName"));
+
+        verify(jobRepository, never()).findAllByUserIdAndCandidateIdProjected(anyString(), anyString(), any());
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testFindJobPageFirstPage() {
+        var jobs = List.of(getJob("A"), getJob("B"), getJob("C"));
+        when(jobRepository.findPageByUserIdAndCandidateId(USER_ID, CANDIDATE_ID, null, null, 3)).thenReturn(jobs);
+
+        var result = jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 2, null);
+
+        assertEquals(2, result.jobs().size());
+        assertEquals(jobService.encodeCursor(new JobDTO(jobs.get(1))), result.nextCursor());
+    }
+
+    @Test
+    public void testFindJobPageLastPage() {
+        var jobs = List.of(getJob("A"));
+        var last = getJob("BARK_LAST");
+        var cursor = jobService.encodeCursor(new JobDTO(last));
+        when(jobRepository.findPageByUserIdAndCandidateId(USER_ID, CANDIDATE_ID, last.startDate(), last.id(), 3)).thenReturn(jobs);
+
+        var result = jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 2, cursor);
+
+        assertEquals(1, result.jobs().size());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    public void testFindJobPageCursorWithoutStartDate() {
+        var jobs = List.of(getJob("A"));
+        var last = new JobDTO("BARK_LAST_ID", USER_ID, CANDIDATE_ID, "BARK_NAME", "BARK_TITLE", null, null, null, null, true, null, 0L);
+        when(jobRepository.findPageByUserIdAndCandidateId(USER_ID, CANDIDATE_ID, null, "BARK_LAST_ID", 3)).thenReturn(jobs);
+
+        var result = jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 2, jobService.encodeCursor(last));
+
+        assertEquals(1, result.jobs().size());
+    }
+
+    @Test
+    public void testFindJobPageBadSize() {
+        var ex = assertThrows(APIUpdateException.class, () -> jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 101, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        verify(jobRepository, never()).findPageByUserIdAndCandidateId(anyString(), anyString(), any(), any(), anyInt());
+    }
+
+    @Test
+    public void testFindJobPageBadCursor() {
+        var ex = assertThrows(APIUpdateException.class, () -> jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 10, "!!!"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
+    @Test
+    public void testFindJobPageCursorWithBadStartDate() {
+        var cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("BARK|BARK_ID".getBytes(StandardCharsets.UTF_8));
+
+        var ex = assertThrows(APIUpdateException.class, () -> jobService.findJobPageForUserAndCandidateId(USER_ID, CANDIDATE_ID, 10, cursor));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
     @Test
     public void testFindJobByUserIdAndCandidateIdAndId_Found() {
 
@@ -137,13 +536,12 @@ class JobServiceTest {
     public void testUpdateJob_SaveThrowsException() {
         var job = getJob("BARK_NAME");
         var jobUpdateDto = getJobUpdate();
-        when(jobRepository.findById(TestHelper.ID)).thenReturn(Optional.of(job));
-        when(jobRepository.save(any(Job.class))).thenThrow(new RuntimeException());
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(anyString(), anyString(), anyString(), isNull(), any(Update.class)))
+                .thenThrow(new RuntimeException());
 
         var result = jobService.updateJob(TestHelper.ID, TestHelper.USER_ID, TestHelper.CANDIDATE_ID, jobUpdateDto);
 
-        verify(jobRepository, times(1)).findById(TestHelper.ID);
-        verify(jobRepository, times(1)).save(any(Job.class));
+        verify(jobRepository, never()).findById(TestHelper.ID);
         assertFalse(result.isPresent());
     }
 
@@ -151,16 +549,81 @@ class JobServiceTest {
     public void testUpdateJob_Happy() {
         var job = getJob("BARK_NAME");
         var jobUpdateDto = getJobUpdate();
-        when(jobRepository.findById(TestHelper.ID)).thenReturn(Optional.of(job));
-        when(jobRepository.save(any(Job.class))).thenReturn(job);
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(eq(TestHelper.ID), eq(TestHelper.USER_ID), eq(TestHelper.CANDIDATE_ID), isNull(), any(Update.class)))
+                .thenReturn(Optional.of(job));
 
         var result = jobService.updateJob(TestHelper.ID, TestHelper.USER_ID, TestHelper.CANDIDATE_ID, jobUpdateDto);
 
-        verify(jobRepository, times(1)).findById(TestHelper.ID);
-        verify(jobRepository, times(1)).save(any(Job.class));
+        verify(jobRepository, never()).findById(TestHelper.ID);
         assertTrue(result.isPresent());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateJobRecordsEventInTheSameTransaction() {
+        when(jobRepository.save(any(Job.class))).thenReturn(getJob("BARK_NAME"));
+
+        jobService.createJob(USER_ID, CANDIDATE_ID, new JobDTO(getJob("BARK_NAME")));
+
+        ArgumentCaptor<List<JobOutboxEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        var inOrder = inOrder(transactionManager, jobRepository, jobOutboxRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(jobRepository).save(any(Job.class));
+        inOrder.verify(jobOutboxRepository).insert(eventsCaptor.capture());
+        inOrder.verify(transactionManager).commit(any());
+        var event = eventsCaptor.getValue().get(0);
+        assertEquals(JobOutbox.CREATED, event.type());
+        assertEquals(CANDIDATE_ID, event.candidateId());
+        assertNull(event.publishedAt());
+    }
+
+    @Test
+    public void testCreateJobOutboxFailureRollsBack() {
+        when(jobRepository.save(any(Job.class))).thenReturn(getJob("BARK_NAME"));
+        when(jobOutboxRepository.insert(anyList())).thenThrow(new RuntimeException("Database error"));
+
+        var result = jobService.createJob(USER_ID, CANDIDATE_ID, new JobDTO(getJob("BARK_NAME")));
+
+        assertTrue(result.isEmpty());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    public void testUpdateJobNotFoundRecordsNothing() {
+        when(jobRepository.updateByIdAndUserIdAndCandidateId(eq(ID), eq(USER_ID), eq(CANDIDATE_ID), any(), any(Update.class)))
+                .thenReturn(Optional.empty());
+
+        assertThrows(APIUpdateException.class, () -> jobService.updateJob(ID, USER_ID, CANDIDATE_ID, getJobUpdate(), null));
+
+        verify(jobOutboxRepository, never()).insert(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeleteJobRecordsDeletedEventWithoutSnapshot() {
+        var job = getJob("BARK_NAME");
+        when(jobRepository.findJobByIdAndUserId(ID, USER_ID)).thenReturn(Optional.of(job));
+
+        jobService.deleteJob(ID, USER_ID);
+
+        ArgumentCaptor<List<JobOutboxEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jobOutboxRepository, times(1)).insert(eventsCaptor.capture());
+        var event = eventsCaptor.getValue().get(0);
+        assertEquals(JobOutbox.DELETED, event.type());
+        assertEquals(job.id(), event.jobId());
+        assertEquals(CANDIDATE_ID, event.candidateId());
+        assertNull(event.job());
+    }
+
+    @Test
+    public void testDeleteMissingJobRecordsNothing() {
+        jobService.deleteJob(ID, USER_ID);
+
+        verify(jobRepository, times(1)).deleteByIdAndUserId(ID, USER_ID);
+        verify(jobOutboxRepository, never()).insert(anyList());
+    }
+
     @Test
     public void testDeleteJob_Success() {
         doNothing().when(jobRepository).deleteByIdAndUserId(TestHelper.ID, TestHelper.USER_ID);
@@ -182,18 +645,37 @@ class JobServiceTest {
     @Test
     public void testFindAllJobsByCandidateId_Sorting() {
 
-        var j1 = new JobDTO(null,null,null,null,null,null,LocalDate.of(2000,1,1),null,null,null,null);
-        var j2 = new JobDTO(null,null,null,null,null,null,LocalDate.of(2020,1,1),null,null,null,null);
-        var j3 = new JobDTO(null,null,null,null,null,null,null,null,null,null,null);
-        var jobs = List.of(j1, j2, j3);
-        when(jobRepository.findAllByCandidateId(CANDIDATE_ID)).thenReturn(jobs);
+        var j1 = new JobDTO(null,null,null,null,null,null,LocalDate.of(2000,1,1),null,null,null,null,null);
+        var j2 = new JobDTO(null,null,null,null,null,null,LocalDate.of(2020,1,1),null,null,null,null,null);
+        var j3 = new JobDTO(null,null,null,null,null,null,null,null,null,null,null,null);
+        when(jobRepository.streamAllByCandidateIdAndEndDateIsNull(CANDIDATE_ID)).thenReturn(Stream.of(j3));
+        when(jobRepository.streamAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc(CANDIDATE_ID)).thenReturn(Stream.of(j2, j1));
 
-        var result = jobService.findAllJobsByCandidateId(CANDIDATE_ID);
+        List<JobDTO> result;
+        try (var jobs = jobService.findAllJobsByCandidateId(CANDIDATE_ID)) {
+            result = jobs.toList();
+        }
 
-        assertEquals(3, result.size());
-        assertEquals(j3, result.get(0));
-        assertEquals(j2, result.get(1));
-        assertEquals(j1, result.get(2));
+        //the order itself comes from the derived queries, JobRepositoryTest pins those down
+        assertEquals(List.of(j3, j2, j1), result);
+    }
+
+    @Test
+    public void testFindAllJobsByCandidateIdIsLazyAndClosesCursors() {
+        var currentClosed = new AtomicBoolean();
+        var pastClosed = new AtomicBoolean();
+        when(jobRepository.streamAllByCandidateIdAndEndDateIsNull(CANDIDATE_ID))
+                .thenReturn(Stream.of(new JobDTO(getJob("CURRENT"))).onClose(() -> currentClosed.set(true)));
+        when(jobRepository.streamAllByCandidateIdAndEndDateIsNotNullOrderByEndDateDesc(CANDIDATE_ID))
+                .thenReturn(Stream.of(new JobDTO(getJob("PAST"))).onClose(() -> pastClosed.set(true)));
+
+        try (var jobs = jobService.findAllJobsByCandidateId(CANDIDATE_ID)) {
+            verifyNoInteractions(jobRepository);
+            assertEquals(List.of("CURRENT", "PAST"), jobs.map(JobDTO::companyName).toList());
+        }
+
+        assertTrue(currentClosed.get());
+        assertTrue(pastClosed.get());
     }
 
     private static Job getJob(String name) {
@@ -208,7 +690,8 @@ class JobServiceTest {
                 new ArrayList<>(),
                 new ArrayList<>(),
                 true,
-                "BARK_LEAVE"
+                "BARK_LEAVE",
+                0L
         );
     }
 
@@ -221,7 +704,8 @@ class JobServiceTest {
                 new ArrayList<>(),
                 new ArrayList<>(),
                 true,
-                "BARK_LEAVE"
+                "BARK_LEAVE",
+                null
         );
     }
 
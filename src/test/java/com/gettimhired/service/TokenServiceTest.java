@@ -0,0 +1,84 @@
+package com.gettimhired.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static com.gettimhired.TestHelper.TOKEN_SECRET;
+import static com.gettimhired.TestHelper.USER_ID;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private TokenService tokenService;
+
+    @BeforeEach
+    public void init() {
+        tokenService = new TokenService(TOKEN_SECRET, false, Duration.ofHours(1));
+    }
+
+    @Test
+    public void testIssueAndVerifyToken() {
+        var token = tokenService.issueToken(USER_ID);
+
+        var result = tokenService.verifyToken(token.token());
+
+        assertTrue(result.isPresent());
+        assertEquals(USER_ID, result.get());
+        assertTrue(token.expiresAt() > System.currentTimeMillis() / 1000);
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        var token = tokenService.issueToken(USER_ID).token();
+        var otherUser = tokenService.issueToken("OTHER_USER").token();
+        //swap the signature of another user's token onto this payload
+        var tampered = token.substring(0, token.lastIndexOf('.')) + otherUser.substring(otherUser.lastIndexOf('.'));
+
+        assertTrue(tokenService.verifyToken(tampered).isEmpty());
+    }
+
+    @Test
+    public void testTokenFromAnotherKeyIsRejected() {
+        var token = new TokenService("OTHER_SECRET_OTHER_SECRET_OTHER_SECRET", false, Duration.ofHours(1)).issueToken(USER_ID).token();
+
+        assertTrue(tokenService.verifyToken(token).isEmpty());
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        var expired = new TokenService(TOKEN_SECRET, false, Duration.ofSeconds(-1)).issueToken(USER_ID).token();
+
+        assertTrue(tokenService.verifyToken(expired).isEmpty());
+    }
+
+    @Test
+    public void testMalformedTokenIsRejected() {
+        assertTrue(tokenService.verifyToken(null).isEmpty());
+        assertTrue(tokenService.verifyToken("").isEmpty());
+        assertTrue(tokenService.verifyToken("BARK").isEmpty());
+        assertTrue(tokenService.verifyToken("BARK.BARK").isEmpty());
+        assertTrue(tokenService.verifyToken("!!.1.!!").isEmpty());
+    }
+
+    @Test
+    public void testBlankSecretFailsStartup() {
+        assertThrows(IllegalStateException.class, () -> new TokenService("", false, Duration.ofHours(1)));
+        assertThrows(IllegalStateException.class, () -> new TokenService(null, false, Duration.ofHours(1)));
+    }
+
+    @Test
+    public void testBlankSecretUsesRandomKeyWhenAllowed() {
+        var randomKeyService = new TokenService(" ", true, Duration.ofHours(1));
+        var token = randomKeyService.issueToken(USER_ID).token();
+
+        assertEquals(USER_ID, randomKeyService.verifyToken(token).orElseThrow());
+        assertTrue(new TokenService(" ", true, Duration.ofHours(1)).verifyToken(token).isEmpty());
+    }
+
+    @Test
+    public void testShortSecretFailsStartup() {
+        assertThrows(IllegalStateException.class, () -> new TokenService("BARK_SECRET", false, Duration.ofHours(1)));
+    }
+}
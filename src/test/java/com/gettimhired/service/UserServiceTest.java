@@ -0,0 +1,265 @@
+package com.gettimhired.service;
+
+import com.gettimhired.error.UserServiceUnavailableException;
+import com.gettimhired.model.dto.UserDTO;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class UserServiceTest {
+
+    private static final String USER_JSON = "{\"id\":\"BARK\",\"password\":\"BARK_PASSWORD\"}";
+
+    private UserService userService;
+    private MockRestServiceServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private HttpServer stub;
+    private final AtomicInteger stubStatus = new AtomicInteger(200);
+    private final AtomicLong stubDelayMillis = new AtomicLong();
+    private final AtomicInteger stubHits = new AtomicInteger();
+
+    @BeforeEach
+    public void init() {
+        var builder = RestClient.builder().baseUrl("http://localhost");
+        server = MockRestServiceServer.bindTo(builder).build();
+        meterRegistry = new SimpleMeterRegistry();
+        userService = new UserService(builder.build(), meterRegistry, 5, Duration.ofSeconds(10), 1, 20, Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (stub != null) {
+            stub.stop(0);
+        }
+    }
+
+    @Test
+    public void testFindUserByIdHappy() {
+        server.expect(requestTo("http://localhost/api/users/BARK/id"))
+                .andRespond(withSuccess(USER_JSON, MediaType.APPLICATION_JSON));
+
+        var result = userService.findUserById("BARK");
+
+        server.verify();
+        assertTrue(result.isPresent());
+        assertEquals("BARK_PASSWORD", result.get().password());
+    }
+
+    @Test
+    public void testFindUserByIdNotFound() {
+        server.expect(requestTo("http://localhost/api/users/BARK/id"))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        var result = userService.findUserById("BARK");
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testFindUserByIdServerErrorIsThrown() {
+        server.expect(requestTo("http://localhost/api/users/BARK/id"))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThrows(HttpServerErrorException.class, () -> userService.findUserById("BARK"));
+    }
+
+    @Test
+    public void testConcurrentLookupsMakeOneRemoteCall() throws Exception {
+        int callers = 8;
+        var release = new CountDownLatch(1);
+        server.expect(ExpectedCount.once(), requestTo("http://localhost/api/users/BARK/id"))
+                .andRespond(request -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return withSuccess(USER_JSON, MediaType.APPLICATION_JSON).createResponse(request);
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<UserDTO>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> userService.findUserById("BARK")));
+            }
+            //hold the remote call open until every other caller has joined it
+            var coalesced = meterRegistry.counter("userservice.lookups.coalesced");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalesced.count() < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (var result : results) {
+                assertEquals("BARK", result.get(5, TimeUnit.SECONDS).orElseThrow().id());
+            }
+            assertEquals(callers - 1, coalesced.count());
+            server.verify();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialLookupsAreNotCoalesced() {
+        server.expect(ExpectedCount.twice(), requestTo("http://localhost/api/users/BARK/id"))
+                .andRespond(withSuccess(USER_JSON, MediaType.APPLICATION_JSON));
+
+        userService.findUserById("BARK");
+        userService.findUserById("BARK");
+
+        server.verify();
+        assertEquals(0, meterRegistry.counter("userservice.lookups.coalesced").count());
+    }
+
+    @Test
+    public void testCircuitOpensAfterServerErrorsAndFailsFast() throws Exception {
+        var service = stubbedUserService(3, Duration.ofSeconds(10), 20);
+        stubStatus.set(503);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpServerErrorException.class, () -> service.findUserById("BARK"));
+        }
+        assertThrows(UserServiceUnavailableException.class, () -> service.findUserById("BARK"));
+
+        assertEquals(3, stubHits.get());
+        assertEquals(1, meterRegistry.counter("userservice.circuitbreaker.transitions", "from", "CLOSED", "to", "OPEN").count());
+        assertEquals(1, meterRegistry.counter("userservice.calls.rejected", "reason", "circuit-open").count());
+    }
+
+    @Test
+    public void testCircuitOpensOnSlowResponses() throws Exception {
+        var service = stubbedUserService(2, Duration.ofSeconds(10), 20);
+        stubDelayMillis.set(500);
+
+        assertThrows(ResourceAccessException.class, () -> service.findUserById("BARK"));
+        assertThrows(ResourceAccessException.class, () -> service.findUserById("BARK"));
+        long start = System.nanoTime();
+        assertThrows(UserServiceUnavailableException.class, () -> service.findUserById("BARK"));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 100);
+        assertEquals(2, stubHits.get());
+    }
+
+    @Test
+    public void testHalfOpenProbeClosesCircuit() throws Exception {
+        var service = stubbedUserService(1, Duration.ofMillis(100), 20);
+        stubStatus.set(503);
+        assertThrows(HttpServerErrorException.class, () -> service.findUserById("BARK"));
+        assertThrows(UserServiceUnavailableException.class, () -> service.findUserById("BARK"));
+
+        stubStatus.set(200);
+        Thread.sleep(150);
+
+        assertTrue(service.findUserById("BARK").isPresent());
+        assertTrue(service.findUserById("BARK").isPresent());
+        assertEquals(3, stubHits.get());
+        assertEquals(1, meterRegistry.counter("userservice.circuitbreaker.transitions", "from", "OPEN", "to", "HALF_OPEN").count());
+        assertEquals(1, meterRegistry.counter("userservice.circuitbreaker.transitions", "from", "HALF_OPEN", "to", "CLOSED").count());
+    }
+
+    @Test
+    public void testHalfOpenProbeFailureReopensCircuit() throws Exception {
+        var service = stubbedUserService(1, Duration.ofMillis(100), 20);
+        stubStatus.set(503);
+        assertThrows(HttpServerErrorException.class, () -> service.findUserById("BARK"));
+
+        Thread.sleep(150);
+
+        assertThrows(HttpServerErrorException.class, () -> service.findUserById("BARK"));
+        assertThrows(UserServiceUnavailableException.class, () -> service.findUserById("BARK"));
+        assertEquals(2, stubHits.get());
+        assertEquals(1, meterRegistry.counter("userservice.circuitbreaker.transitions", "from", "HALF_OPEN", "to", "OPEN").count());
+    }
+
+    @Test
+    public void testNotFoundDoesNotOpenCircuit() throws Exception {
+        var service = stubbedUserService(2, Duration.ofSeconds(10), 20);
+        stubStatus.set(404);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.findUserById("BARK").isEmpty());
+        }
+
+        assertEquals(5, stubHits.get());
+    }
+
+    @Test
+    public void testBulkheadRejectsWhenFull() throws Exception {
+        var service = stubbedUserService(5, Duration.ofSeconds(10), 1);
+        stubDelayMillis.set(300);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            var slowCall = executor.submit(() -> service.findUserById("SLOW"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (stubHits.get() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(UserServiceUnavailableException.class, () -> service.findUserById("BARK"));
+            assertTrue(slowCall.get(5, TimeUnit.SECONDS).isPresent());
+            assertEquals(1, meterRegistry.counter("userservice.calls.rejected", "reason", "bulkhead-full").count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private UserService stubbedUserService(int failureThreshold, Duration openDuration, int maxConcurrentCalls) throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/api/users", exchange -> {
+            stubHits.incrementAndGet();
+            try {
+                Thread.sleep(stubDelayMillis.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var body = USER_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(stubStatus.get(), body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.start();
+
+        var requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setReadTimeout(Duration.ofMillis(400));
+        var restClient = RestClient.builder()
+                .baseUrl("http://localhost:" + stub.getAddress().getPort())
+                .requestFactory(requestFactory)
+                .build();
+        return new UserService(restClient, meterRegistry, failureThreshold, openDuration, 1, maxConcurrentCalls, Duration.ofMillis(10));
+    }
+}